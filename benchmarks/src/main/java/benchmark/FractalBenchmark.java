@@ -0,0 +1,70 @@
+package benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import terrainGeneration.DomainWarp;
+import terrainGeneration.FractalNoise;
+import terrainGeneration.NoiseCache;
+import terrainGeneration.NoiseSettings;
+import terrainGeneration.NoiseSource;
+import terrainGeneration.Vector;
+
+import java.util.concurrent.TimeUnit;
+
+// Scanline throughput of the fractal modes, with and without domain warping. The batch
+// methods reuse per thread scratch, gc.alloc.rate.norm should stay at zero.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FractalBenchmark {
+
+    @Param({"FBM", "RIDGED", "BILLOW", "TURBULENCE"})
+    public FractalNoise.Mode mode;
+
+    @Param({"0", "0.5"})
+    public float warp;
+
+    @Param({"1024"})
+    public int rowLength;
+
+    private NoiseSource source;
+
+    private float[] xs;
+    private float[] row;
+
+    private int next;
+
+    @Setup
+    public void setup() {
+        NoiseSettings settings = new NoiseSettings(42, 256, 5, 0.5f, 2f, new Vector(0, 0));
+        source = new FractalNoise(NoiseCache.shared().get(settings.seed), mode, settings);
+        if (warp > 0) {
+            source = new DomainWarp(source, NoiseCache.shared().get(settings.seed + 1), warp);
+        }
+
+        xs = new float[rowLength];
+        for (int i = 0; i < rowLength; i++) {
+            xs[i] = (i - rowLength / 2f) / 256;
+        }
+        row = new float[rowLength];
+    }
+
+    @Benchmark
+    public void evalRow(Blackhole blackhole) {
+        source.evalRow(xs, 0, (next++ & 1023) / 256f, rowLength, row, 0);
+        blackhole.consume(row);
+    }
+}
@@ -0,0 +1,85 @@
+package benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import terrainGeneration.HeightMap;
+import terrainGeneration.MapGenerator;
+import terrainGeneration.TerrainNoise;
+import terrainGeneration.Vector;
+import utils.PngWriter;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+// Colorization of a generated map and PNG encoding of the colorized image, by PngWriter on the calling thread and
+// on a pool, against ImageIO as the baseline. All of them write the same file.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ImageBenchmark {
+
+    @Param({"256", "1024"})
+    public int size;
+
+    private HeightMap noiseMap;
+    private BufferedImage image;
+    private int[] pixels;
+    private Path file;
+    private ExecutorService pool;
+
+    @Setup
+    public void setup() throws IOException {
+        noiseMap = TerrainNoise.generateNoiseMap(size, size, 42, size / 4f, 5, 0.5f, 2f, new Vector(0, 0));
+        image = MapGenerator.createImage(noiseMap);
+        pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        file = Files.createTempFile("benchmark", ".png");
+        pool = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        pool.shutdown();
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public BufferedImage colorize() {
+        return MapGenerator.createImage(noiseMap);
+    }
+
+    @Benchmark
+    public long encodePngImageIO() throws IOException {
+        ImageIO.write(image, "PNG", file.toFile());
+        return Files.size(file);
+    }
+
+    @Benchmark
+    public long encodePngWriter() throws IOException {
+        return PngWriter.writeRgb(pixels, size, size, file, null);
+    }
+
+    @Benchmark
+    public long encodePngWriterParallel() throws IOException {
+        return PngWriter.writeRgb(pixels, size, size, file, pool);
+    }
+}
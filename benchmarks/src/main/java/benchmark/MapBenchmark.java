@@ -0,0 +1,47 @@
+package benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import terrainGeneration.HeightMap;
+import terrainGeneration.NoiseSettings;
+import terrainGeneration.TerrainNoise;
+import terrainGeneration.Vector;
+
+import java.util.concurrent.TimeUnit;
+
+// Full fractal map generation, including normalization, on the calling thread,
+// with the float and the double precision kernel. Quiet, without the progress bar.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dterrain.quiet=true")
+public class MapBenchmark {
+
+    @Param({"256", "1024"})
+    public int size;
+
+    @Param({"1", "5", "8"})
+    public int octaves;
+
+    @Param({"false", "true"})
+    public boolean precise;
+
+    private final Vector offset = new Vector(0, 0);
+
+    @Benchmark
+    public HeightMap generateNoiseMap() {
+        HeightMap noiseMap = new HeightMap(size, size);
+        TerrainNoise.generateNoiseMap(noiseMap, new NoiseSettings(42, size / 4f, octaves, 0.5f, 2f, offset, precise), null, 1);
+        return noiseMap;
+    }
+}
@@ -0,0 +1,129 @@
+package benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import terrainGeneration.OpenSimplexNoise;
+
+import java.util.concurrent.TimeUnit;
+
+// Single sample and scanline throughput of the 2D, 3D and 4D OpenSimplex kernels,
+// of the double precision 2D kernel and of the SIMD 2D scanline.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NoiseBenchmark {
+
+    private static final int SAMPLES = 1024;
+
+    @Param({"1024"})
+    public int rowLength;
+
+    private OpenSimplexNoise noise;
+
+    private float[] xs;
+    private float[] ys;
+    private float[] row;
+    private float[] rowXs;
+    private double[] preciseXs;
+
+    private int next;
+
+    @Setup
+    public void setup() {
+        noise = new OpenSimplexNoise(42);
+
+        xs = new float[SAMPLES];
+        ys = new float[SAMPLES];
+        for (int i = 0; i < SAMPLES; i++) {
+            xs[i] = -51234.5f + i * 0.37f;
+            ys[i] = 81234.5f - i * 0.53f;
+        }
+
+        row = new float[rowLength];
+        rowXs = new float[rowLength];
+        preciseXs = new double[rowLength];
+        for (int i = 0; i < rowLength; i++) {
+            rowXs[i] = -51234.5f + i * 0.01f;
+            preciseXs[i] = -51234.5 + i * 0.01;
+        }
+    }
+
+    @Benchmark
+    public float eval() {
+        int i = next++ & (SAMPLES - 1);
+        return noise.eval(xs[i], ys[i]);
+    }
+
+    @Benchmark
+    public double evalPrecise() {
+        int i = next++ & (SAMPLES - 1);
+        return noise.eval((double) xs[i], (double) ys[i]);
+    }
+
+    @Benchmark
+    public double evalCell() {
+        int i = next++ & (SAMPLES - 1);
+        return noise.evalCell(1L << 40, -(1L << 40), xs[i] - (int) xs[i], ys[i] - (int) ys[i]);
+    }
+
+    @Benchmark
+    public float eval3D() {
+        int i = next++ & (SAMPLES - 1);
+        return noise.eval(xs[i], ys[i], xs[SAMPLES - 1 - i]);
+    }
+
+    @Benchmark
+    public float eval4D() {
+        int i = next++ & (SAMPLES - 1);
+        return noise.eval(xs[i], ys[i], xs[SAMPLES - 1 - i], ys[SAMPLES - 1 - i]);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void evalRow(Blackhole blackhole) {
+        int i = next++ & (SAMPLES - 1);
+        noise.evalRow(xs[i], ys[i], 0.01f, rowLength, row, 0);
+        blackhole.consume(row);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void evalRowPrecise(Blackhole blackhole) {
+        int i = next++ & (SAMPLES - 1);
+        noise.evalRow(preciseXs, 0, ys[i], rowLength, row, 0);
+        blackhole.consume(row);
+    }
+
+    // The scanline NoiseSampler uses, on the scalar kernel.
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void evalRowArray(Blackhole blackhole) {
+        int i = next++ & (SAMPLES - 1);
+        noise.evalRow(rowXs, 0, ys[i], rowLength, row, 0);
+        blackhole.consume(row);
+    }
+
+    // The same scanline on the SIMD kernel, with as many lanes as the host has. Add -XX:MaxVectorSize=32
+    // to measure the 8 lanes of AVX2 on an AVX-512 host.
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+    public void evalRowVector(Blackhole blackhole) {
+        int i = next++ & (SAMPLES - 1);
+        noise.evalRow(rowXs, 0, ys[i], rowLength, row, 0);
+        blackhole.consume(row);
+    }
+}
@@ -0,0 +1,41 @@
+package benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import terrainGeneration.HeightMap;
+import terrainGeneration.TerrainNoise;
+import terrainGeneration.Vector;
+
+import java.util.concurrent.TimeUnit;
+
+// Scaling of the banded map generation with the thread count, on the shared pools of
+// TerrainNoise. Compare against threads=1 on a machine with at least as many cores.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dterrain.quiet=true")
+public class ParallelMapBenchmark {
+
+    @Param({"1024"})
+    public int size;
+
+    @Param({"1", "2", "4", "8", "16"})
+    public int threads;
+
+    private final Vector offset = new Vector(0, 0);
+
+    @Benchmark
+    public HeightMap generateNoiseMap() {
+        return TerrainNoise.generateNoiseMap(size, size, 42, size / 4f, 5, 0.5f, 2f, offset, threads);
+    }
+}
@@ -0,0 +1,102 @@
+package graphics;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TileCacheTest {
+
+    @Test
+    void keysKeepNegativeCoordinates() {
+        int[] coordinates = { 0, 1, -1, 12345, -12345, (1 << 28) - 1, -(1 << 28) };
+        for (int level : new int[]{ 0, 7, TileCache.MAX_LEVEL }) {
+            for (int tileX : coordinates) {
+                for (int tileY : coordinates) {
+                    long key = TileCache.key(level, tileX, tileY);
+                    assertEquals(level, TileCache.level(key));
+                    assertEquals(tileX, TileCache.tileX(key));
+                    assertEquals(tileY, TileCache.tileY(key));
+                }
+            }
+        }
+    }
+
+    @Test
+    void retainCancelsQueuedTiles() throws InterruptedException {
+        BlockingSource source = new BlockingSource();
+        CountDownLatch ready = new CountDownLatch(2);
+        TileCache cache = new TileCache(source, null, 1, ready::countDown);
+        try {
+            cache.request(0, 0, 0);
+            assertTrue(source.started.await(10, TimeUnit.SECONDS));
+            cache.request(0, 1, 0);
+            cache.request(0, -1, 0);
+            cache.retain((level, tileX, tileY) -> tileX == 0);
+
+            // Queued behind the cancelled tiles, so they had their turn once it is ready.
+            cache.request(0, 2, 0);
+            source.release.countDown();
+            assertTrue(ready.await(10, TimeUnit.SECONDS));
+
+            assertNotNull(cache.get(0, 0, 0));
+            assertNull(cache.get(0, 1, 0));
+            assertNull(cache.get(0, -1, 0));
+            assertNotNull(cache.get(0, 2, 0));
+            assertEquals(List.of(0, 2), source.rendered);
+        } finally {
+            cache.shutdown();
+        }
+    }
+
+    @Test
+    void tilesDroppedWhileRenderingAreNotCached() throws InterruptedException {
+        BlockingSource source = new BlockingSource();
+        CountDownLatch ready = new CountDownLatch(1);
+        TileCache cache = new TileCache(source, null, 1, ready::countDown);
+        try {
+            cache.request(0, 0, 0);
+            assertTrue(source.started.await(10, TimeUnit.SECONDS));
+            cache.retain((level, tileX, tileY) -> false);
+
+            // Rendered on the same thread after the dropped tile is done.
+            cache.request(0, 5, 0);
+            source.release.countDown();
+            assertTrue(ready.await(10, TimeUnit.SECONDS));
+
+            assertNull(cache.get(0, 0, 0));
+            assertNotNull(cache.get(0, 5, 0));
+            assertEquals(1, cache.size());
+        } finally {
+            cache.shutdown();
+        }
+    }
+
+    // Blocks the first tile until released and records the tile x of every tile it renders.
+    private static final class BlockingSource implements TileSource {
+
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final List<Integer> rendered = new CopyOnWriteArrayList<>();
+
+        @Override
+        public BufferedImage renderTile(int originX, int originY, int size, int step) {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            rendered.add(originX / (size * step));
+            return new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB);
+        }
+    }
+}
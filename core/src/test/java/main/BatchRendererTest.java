@@ -0,0 +1,58 @@
+package main;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BatchRendererTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void rendersAValidJob() {
+        Path out = directory.resolve("map.png");
+        assertEquals(BatchRenderer.EXIT_OK, BatchRenderer.run(new String[]{"--size", "32x16", "--threads", "1", "--out", out.toString()}));
+        assertTrue(Files.exists(out));
+    }
+
+    @Test
+    void rejectsBadOptionsBeforeRendering() {
+        Path out = directory.resolve("map.png");
+        String[][] invalid = {
+                {"--octave", "8"},
+                {"--octaves", "many"},
+                {"--octaves", "0"},
+                {"--fractal", "fractal"},
+                {"--size", "12xa"},
+                {"--precise", "yes"},
+                {"--ramp", "rainbow"},
+                {"--png", "gray8"},
+                {"--erode", "-1"},
+                {"--workers", "localhost"},
+        };
+        for (String[] option : invalid) {
+            int exit = BatchRenderer.run(new String[]{"--size", "32x16", "--out", out.toString(), option[0], option[1]});
+            assertEquals(BatchRenderer.EXIT_USAGE, exit, String.join(" ", option));
+        }
+        assertFalse(Files.exists(out));
+    }
+
+    @Test
+    void rejectsABadJobLineBeforeRenderingAnyJob() throws IOException {
+        Path first = directory.resolve("first.png");
+        Path jobs = Files.write(directory.resolve("jobs.txt"), List.of(
+                "out=" + first + " size=32x16",
+                "out=" + directory.resolve("second.png") + " size=32x16 lacunarity=2,5"));
+        assertEquals(BatchRenderer.EXIT_USAGE, BatchRenderer.run(new String[]{"--jobs", jobs.toString()}));
+        assertFalse(Files.exists(first));
+    }
+}
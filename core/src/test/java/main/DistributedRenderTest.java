@@ -0,0 +1,50 @@
+package main;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import terrainGeneration.HeightMapFile;
+import terrainGeneration.TileWorker;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class DistributedRenderTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void workersWriteTheMapOfALocalJob() throws IOException {
+        try (TileWorker first = TileWorker.start(0, 2); TileWorker second = TileWorker.start(0, 1)) {
+            String workers = "127.0.0.1:" + first.getPort() + ",127.0.0.1:" + second.getPort();
+            // Odd sizes put the origin between two pixels, the tiles do not divide the map.
+            for (String[] job : new String[][]{
+                    { "--size", "201x97", "--fractal", "fbm", "--precise", "false" },
+                    { "--size", "150x130", "--fractal", "ridged", "--warp", "0.5", "--precise", "true" },
+            }) {
+                Path local = directory.resolve("local.hmap");
+                Path distributed = directory.resolve("distributed.hmap");
+                assertEquals(BatchRenderer.EXIT_OK, BatchRenderer.run(concat(job, "--threads", "1", "--scale", "40", "--out", local.toString())));
+                assertEquals(BatchRenderer.EXIT_OK, BatchRenderer.run(concat(job, "--threads", "1", "--scale", "40", "--out", distributed.toString(),
+                        "--workers", workers, "--tile", "64")));
+
+                try (HeightMapFile expected = HeightMapFile.open(local); HeightMapFile actual = HeightMapFile.open(distributed)) {
+                    int width = expected.getWidth();
+                    int height = expected.getHeight();
+                    assertArrayEquals(expected.readRegion(0, 0, width, height).data(), actual.readRegion(0, 0, width, height).data(),
+                            String.join(" ", job));
+                }
+            }
+        }
+    }
+
+    private static String[] concat(String[] first, String... second) {
+        String[] all = new String[first.length + second.length];
+        System.arraycopy(first, 0, all, 0, first.length);
+        System.arraycopy(second, 0, all, first.length, second.length);
+        return all;
+    }
+}
@@ -0,0 +1,86 @@
+package terrainGeneration;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ErosionTest {
+
+    @Test
+    void hydraulicRejectsMapsWithoutCells() {
+        assertThrows(IllegalArgumentException.class, () -> Erosion.hydraulic(new HeightMap(1, 16), 1, 100, null));
+        assertThrows(IllegalArgumentException.class, () -> Erosion.hydraulic(new HeightMap(16, 1), 1, 100, null));
+    }
+
+    @Test
+    void narrowMapsOnlyGetThermalErosion() {
+        for (HeightMap map : new HeightMap[]{ new HeightMap(1, 9), new HeightMap(9, 1), new HeightMap(1, 1) }) {
+            float[] heights = map.data();
+            for (int i = 0; i < heights.length; i++) {
+                heights[i] = (i % 2) * 0.5f;
+            }
+            HeightMap thermalOnly = new HeightMap(map.getWidth(), map.getHeight());
+            System.arraycopy(heights, 0, thermalOnly.data(), 0, heights.length);
+
+            Erosion.erode(map, new ErosionSettings(3, 1000, 4), null);
+            Erosion.thermal(thermalOnly, new ErosionSettings(3, 1000, 4).talus, 4, null);
+            assertArrayEquals(thermalOnly.data(), map.data(), Arrays.toString(map.data()));
+        }
+    }
+
+    @Test
+    void hydraulicErosionDoesNotDependOnTheThreads() {
+        // Several tiles per axis, so every phase has tiles running side by side.
+        HeightMap input = noiseMap(300, 300);
+        HeightMap serial = copy(input);
+        Erosion.hydraulic(serial, 9, 20000, null);
+        assertFalse(Arrays.equals(input.data(), serial.data()));
+
+        for (int threads : new int[]{ 1, 4 }) {
+            ExecutorService executor = Executors.newFixedThreadPool(threads);
+            try {
+                HeightMap parallel = copy(input);
+                Erosion.hydraulic(parallel, 9, 20000, executor);
+                assertArrayEquals(serial.data(), parallel.data(), threads + " threads");
+            } finally {
+                executor.shutdown();
+            }
+        }
+    }
+
+    @Test
+    void thermalErosionKeepsTheMaterial() {
+        HeightMap map = noiseMap(123, 77);
+        double before = sum(map);
+        Erosion.thermal(map, 0.001f, 20, null);
+        assertEquals(before, sum(map), before * 1e-5);
+        assertFalse(Arrays.equals(noiseMap(123, 77).data(), map.data()));
+    }
+
+    private static HeightMap noiseMap(int width, int height) {
+        HeightMap map = new HeightMap(width, height);
+        TerrainNoise.generateNoiseMap(map, new NoiseSettings(4, 60, 5, 0.5f, 2f, 0, 0, false), null, 1);
+        return map;
+    }
+
+    private static HeightMap copy(HeightMap map) {
+        HeightMap copy = new HeightMap(map.getWidth(), map.getHeight());
+        System.arraycopy(map.data(), 0, copy.data(), 0, map.data().length);
+        return copy;
+    }
+
+    private static double sum(HeightMap map) {
+        double sum = 0;
+        for (float height : map.data()) {
+            sum += height;
+        }
+        return sum;
+    }
+}
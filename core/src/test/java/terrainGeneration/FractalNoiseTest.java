@@ -0,0 +1,89 @@
+package terrainGeneration;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class FractalNoiseTest {
+
+    private final OpenSimplexNoise noise = new OpenSimplexNoise(99);
+
+    @Test
+    void fbmRowsMatchTheOldOctaveLoop() {
+        for (boolean precise : new boolean[]{ false, true }) {
+            NoiseSettings settings = new NoiseSettings(99, 37.5f, 6, 0.45f, 2.1f, 12.5f, -3f, precise);
+            NoiseSampler sampler = new NoiseSampler(new FractalNoise(noise, FractalNoise.Mode.FBM, settings), settings, -150.5, 2048, 300);
+
+            float[] row = new float[300];
+            for (int y = 0; y < 5; y++) {
+                sampler.fillRow(y, row, 0);
+                assertArrayEquals(referenceRow(settings, -150.5, 2048, y, 300), row, "precise " + precise + " y " + y);
+            }
+        }
+    }
+
+    @Test
+    void rowsMatchEvalInEveryMode() {
+        NoiseSettings settings = new NoiseSettings(99, 1, 5, 0.5f, 2f, 0, 0, false);
+        Random random = new Random(3);
+        float[] xs = new float[101];
+        for (int i = 0; i < xs.length; i++) {
+            xs[i] = random.nextFloat() * 200 - 100;
+        }
+
+        for (FractalNoise.Mode mode : FractalNoise.Mode.values()) {
+            FractalNoise fractal = new FractalNoise(noise, mode, settings);
+            float[] row = new float[xs.length];
+            fractal.evalRow(xs, 0, 4.75f, xs.length, row, 0);
+            for (int i = 0; i < xs.length; i++) {
+                assertEquals(Float.floatToIntBits(fractal.eval(xs[i], 4.75f)), Float.floatToIntBits(row[i]), mode + " x " + xs[i]);
+            }
+        }
+    }
+
+    // The octave loop of NoiseSampler before FractalNoise, kept to pin the default output.
+    private float[] referenceRow(NoiseSettings settings, double originX, double originY, int y, int width) {
+        float scale = settings.scale;
+        Random prng = new Random(settings.seed);
+        float[] heights = new float[width];
+        float[] samples = new float[width];
+        float[] octaveX = new float[width];
+        double[] preciseOctaveX = new double[width];
+
+        float amplitude = 1;
+        float frequency = 1;
+        double preciseFrequency = 1;
+        for (int i = 0; i < settings.octaves; i++) {
+            int randomX = prng.nextInt(200001) - 100000;
+            int randomY = prng.nextInt(200001) - 100000;
+
+            if (settings.precise) {
+                double offsetX = (double) randomX + settings.offsetX;
+                for (int x = 0; x < width; x++) {
+                    preciseOctaveX[x] = (((double) x + originX) / scale * preciseFrequency) + offsetX;
+                }
+                double sampleY = ((y + originY) / scale * preciseFrequency) + ((double) randomY + settings.offsetY);
+                noise.evalRow(preciseOctaveX, 0, sampleY, width, samples, 0);
+            } else {
+                float offsetX = randomX + settings.offsetX;
+                for (int x = 0; x < width; x++) {
+                    octaveX[x] = ((x + (float) originX) / scale * frequency) + offsetX;
+                }
+                float sampleY = ((y + (float) originY) / scale * frequency) + (randomY + settings.offsetY);
+                noise.evalRow(octaveX, 0, sampleY, width, samples, 0);
+            }
+
+            for (int x = 0; x < width; x++) {
+                heights[x] += samples[x] * amplitude;
+            }
+
+            amplitude *= settings.persistance;
+            frequency *= settings.lacunarity;
+            preciseFrequency *= settings.lacunarity;
+        }
+        return heights;
+    }
+}
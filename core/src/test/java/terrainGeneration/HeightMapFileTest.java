@@ -0,0 +1,122 @@
+package terrainGeneration;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HeightMapFileTest {
+
+    private final NoiseSettings settings = new NoiseSettings(17, 80, 5, 0.45f, 2.1f, 3, -4, true);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void headerDescribesHowTheMapWasMade() throws IOException {
+        Path path = directory.resolve("ridged.hmap");
+        HeightMapFile.create(path, 10, 7, 4, HeightMapFile.Format.FLOAT32, settings, FractalNoise.Mode.RIDGED, 0.75f, true).close();
+        try (HeightMapFile file = HeightMapFile.open(path)) {
+            assertEquals(settings.toString(), file.getSettings().toString());
+            assertEquals(FractalNoise.Mode.RIDGED, file.getMode());
+            assertEquals(0.75f, file.getWarp());
+            assertTrue(file.isEroded());
+        }
+
+        HeightMapFile.create(path, 10, 7, 4, HeightMapFile.Format.UINT16, settings).close();
+        try (HeightMapFile file = HeightMapFile.open(path)) {
+            assertEquals(FractalNoise.Mode.FBM, file.getMode());
+            assertEquals(0, file.getWarp());
+            assertFalse(file.isEroded());
+        }
+    }
+
+    @Test
+    void regionsRoundTripAcrossPaddedTiles() throws IOException {
+        // 3x2 tiles of 16, the right and bottom ones only partly used.
+        HeightMap map = randomMap(41, 23, 0, 1);
+        Path path = directory.resolve("float.hmap");
+        try (HeightMapFile file = HeightMapFile.create(path, 41, 23, 16, HeightMapFile.Format.FLOAT32, settings)) {
+            // Written in pieces that straddle the tile borders.
+            file.writeRegion(0, 0, region(map, 0, 0, 20, 10));
+            file.writeRegion(20, 0, region(map, 20, 0, 21, 10));
+            file.writeRegion(0, 10, region(map, 0, 10, 41, 13));
+        }
+        assertEquals(HeightMapFile.HEADER_SIZE + 3 * 2 * 16 * 16 * 4, Files.size(path));
+
+        try (HeightMapFile file = HeightMapFile.open(path)) {
+            assertArrayEquals(map.data(), file.readRegion(0, 0, 41, 23).data());
+            assertArrayEquals(region(map, 13, 9, 25, 14).data(), file.readRegion(13, 9, 25, 14).data());
+        }
+    }
+
+    @Test
+    void uint16SamplesAreQuantized() throws IOException {
+        HeightMap map = randomMap(19, 11, -0.2f, 1.2f);
+        Path path = directory.resolve("short.hmap");
+        try (HeightMapFile file = HeightMapFile.create(path, 19, 11, 8, HeightMapFile.Format.UINT16, settings)) {
+            file.writeRegion(0, 0, map);
+        }
+
+        try (HeightMapFile file = HeightMapFile.open(path)) {
+            assertEquals(HeightMapFile.Format.UINT16, file.getFormat());
+            float[] read = file.readRegion(0, 0, 19, 11).data();
+            for (int i = 0; i < read.length; i++) {
+                float clamped = Math.max(0, Math.min(1, map.data()[i]));
+                assertEquals(Math.round(clamped * 65535) / 65535f, read[i], "sample " + i);
+                assertEquals(clamped, read[i], 0.5f / 65535);
+            }
+        }
+    }
+
+    @Test
+    void openRejectsOtherFiles() throws IOException {
+        Path path = directory.resolve("map.hmap");
+        HeightMapFile.create(path, 4, 4, 4, HeightMapFile.Format.FLOAT32, settings).close();
+        byte[] valid = Files.readAllBytes(path);
+
+        byte[] magic = valid.clone();
+        magic[0] ^= 1;
+        Files.write(path, magic);
+        assertThrows(IOException.class, () -> HeightMapFile.open(path));
+
+        byte[] version = valid.clone();
+        ByteBuffer.wrap(version).order(ByteOrder.LITTLE_ENDIAN).putInt(4, 3);
+        Files.write(path, version);
+        assertThrows(IOException.class, () -> HeightMapFile.open(path));
+
+        byte[] truncated = new byte[valid.length - 1];
+        System.arraycopy(valid, 0, truncated, 0, truncated.length);
+        Files.write(path, truncated);
+        assertThrows(IOException.class, () -> HeightMapFile.open(path));
+    }
+
+    private static HeightMap randomMap(int width, int height, float min, float max) {
+        HeightMap map = new HeightMap(width, height);
+        Random random = new Random(width * 31 + height);
+        float[] heights = map.data();
+        for (int i = 0; i < heights.length; i++) {
+            heights[i] = min + random.nextFloat() * (max - min);
+        }
+        return map;
+    }
+
+    private static HeightMap region(HeightMap map, int x, int y, int width, int height) {
+        HeightMap region = new HeightMap(width, height);
+        for (int row = 0; row < height; row++) {
+            System.arraycopy(map.data(), map.index(x, y + row), region.data(), region.index(0, row), width);
+        }
+        return region;
+    }
+}
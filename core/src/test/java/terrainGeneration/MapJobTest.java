@@ -0,0 +1,110 @@
+package terrainGeneration;
+
+import graphics.NoiseCanvas;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MapJobTest {
+
+    private final NoiseSettings settings = new NoiseSettings(3, 40, 3, 0.5f, 2f, 0, 0, false);
+
+    @Test
+    void cancelledJobsStopSampling() throws InterruptedException {
+        SlowSource source = new SlowSource(new FractalNoise(settings));
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            MapJob job = TerrainNoise.generateAsync(new HeightMap(64, 64), source, settings, executor, 4, null);
+            assertTrue(source.sampling.await(10, TimeUnit.SECONDS));
+            assertTrue(job.cancel());
+            source.release.countDown();
+
+            assertThrows(CancellationException.class, () -> job.result().join());
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+            // The row in progress when the job was cancelled, the other bands never start.
+            assertEquals(1, source.rows.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void theLastProgressEventPrecedesTheResult() {
+        List<GenerationProgress> events = new CopyOnWriteArrayList<>();
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            MapJob job = TerrainNoise.generateAsync(new HeightMap(96, 80), new FractalNoise(settings), settings, executor, 4, events::add);
+            GenerationProgress last = job.result().thenApply(map -> events.get(events.size() - 1)).join();
+            assertTrue(last.done);
+            assertEquals(80, last.rowsDone);
+            assertEquals(80, last.totalRows);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void startingAMapCancelsTheOneBefore() {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            MapGenerator generator = new MapGenerator(new NoiseCanvas(), executor);
+            MapJob first = generator.generateMapAsync(null);
+            MapJob second = generator.generateMapAsync(null);
+            assertTrue(first.isCancelled());
+            assertThrows(CancellationException.class, () -> first.result().join());
+
+            // Cancelled as well, so it writes no files.
+            assertTrue(second.cancel());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    // Blocks in the first row it samples until released, and counts the rows.
+    private static final class SlowSource implements NoiseSource {
+
+        final CountDownLatch sampling = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger rows = new AtomicInteger();
+        private final NoiseSource source;
+
+        SlowSource(NoiseSource source) {
+            this.source = source;
+        }
+
+        @Override
+        public float eval(float x, float y) {
+            return source.eval(x, y);
+        }
+
+        @Override
+        public void evalRow(float[] xs, int xsOffset, float y, int count, float[] out, int offset) {
+            if (rows.incrementAndGet() == 1) {
+                sampling.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            source.evalRow(xs, xsOffset, y, count, out, offset);
+        }
+
+        @Override
+        public NoiseRange range() {
+            return source.range();
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package terrainGeneration;
+
+import org.junit.jupiter.api.Test;
+import utils.ColorRamp;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class MapPipelineTest {
+
+    private static final int WIDTH = 67;
+    private static final int HEIGHT = 45;
+
+    @Test
+    void heightMapsMatchGenerateNoiseMap() {
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            MapPipeline pipeline = new MapPipeline(executor);
+            for (boolean precise : new boolean[]{ false, true }) {
+                for (FractalNoise.Mode mode : FractalNoise.Mode.values()) {
+                    // More octaves and a new persistance reuse the cached layers and sum them again.
+                    for (int octaves : new int[]{ 3, 6 }) {
+                        for (float persistance : new float[]{ 0.5f, 0.35f }) {
+                            NoiseSettings settings = new NoiseSettings(11, 23.5f, octaves, persistance, 2.2f, 1.5f, -7f, precise);
+                            HeightMap expected = generate(settings, mode);
+                            assertArrayEquals(expected.data(), pipeline.heightMap(settings, mode, WIDTH, HEIGHT).data(),
+                                    mode + " octaves " + octaves + " persistance " + persistance + " precise " + precise);
+                        }
+                    }
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void layersBeyondTheBudgetAreNotKept() {
+        // Room for the map and two layers, but not for all five layers.
+        MapPipeline pipeline = new MapPipeline(null, 3L * 4 * WIDTH * HEIGHT);
+        NoiseSettings settings = new NoiseSettings(8, 20, 5, 0.5f, 2f, 0, 0, false);
+        for (FractalNoise.Mode mode : new FractalNoise.Mode[]{ FractalNoise.Mode.FBM, FractalNoise.Mode.BILLOW }) {
+            assertArrayEquals(generate(settings, mode).data(), pipeline.heightMap(settings, mode, WIDTH, HEIGHT).data(), mode.toString());
+        }
+        assertEquals(2L * 4 * WIDTH * HEIGHT, pipeline.size());
+    }
+
+    @Test
+    void imagesColorTheGeneratedMap() {
+        MapPipeline pipeline = new MapPipeline(null);
+        NoiseSettings settings = new NoiseSettings(5, 30, 4, 0.5f, 2f, 0, 0, false);
+        HeightMap map = generate(settings, FractalNoise.Mode.RIDGED);
+
+        // The second ramp only recolors the cached map.
+        for (ColorRamp colorRamp : new ColorRamp[]{ ColorRamp.terrain(), ColorRamp.gradient(Color.black, Color.white) }) {
+            BufferedImage expected = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+            MapGenerator.colorize(map, colorRamp, expected, null);
+            BufferedImage image = pipeline.image(settings, FractalNoise.Mode.RIDGED, WIDTH, HEIGHT, colorRamp);
+            assertArrayEquals(expected.getRGB(0, 0, WIDTH, HEIGHT, null, 0, WIDTH), image.getRGB(0, 0, WIDTH, HEIGHT, null, 0, WIDTH));
+        }
+    }
+
+    private static HeightMap generate(NoiseSettings settings, FractalNoise.Mode mode) {
+        HeightMap map = new HeightMap(WIDTH, HEIGHT);
+        FractalNoise fractal = new FractalNoise(NoiseCache.shared().get(settings.seed), mode, settings);
+        TerrainNoise.generateNoiseMap(map, fractal, settings, null, 1);
+        return map;
+    }
+}
@@ -0,0 +1,42 @@
+package terrainGeneration;
+
+import org.junit.jupiter.api.Test;
+import utils.ColorRamp;
+
+import java.awt.image.BufferedImage;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class NoiseTilesTest {
+
+    private static final int SIZE = 32;
+
+    @Test
+    void tilesShowEveryStepthPixelOfOneRegion() {
+        NoiseSettings settings = new NoiseSettings(21, 50, 4, 0.5f, 2f, 0, 0, false);
+        FractalNoise source = new FractalNoise(settings);
+        ColorRamp colorRamp = ColorRamp.terrain();
+        NoiseTiles tiles = new NoiseTiles(source, settings, colorRamp);
+
+        for (int step : new int[]{ 1, 4 }) {
+            // Two tiles side by side left of and above the origin, against one region at full detail.
+            int originX = -2 * SIZE * step;
+            int originY = -SIZE * step;
+            HeightMap region = TerrainNoise.generateRegion(source, settings, originX, originY, 2 * SIZE * step, SIZE * step, 1);
+            int[] colors = new int[region.getWidth() * region.getHeight()];
+            for (int y = 0; y < region.getHeight(); y++) {
+                colorRamp.colorize(region.data(), region.index(0, y), colors, y * region.getWidth(), region.getWidth());
+            }
+
+            for (int tile = 0; tile < 2; tile++) {
+                BufferedImage image = tiles.renderTile(originX + tile * SIZE * step, originY, SIZE, step);
+                for (int y = 0; y < SIZE; y++) {
+                    for (int x = 0; x < SIZE; x++) {
+                        int expected = colors[y * step * region.getWidth() + (tile * SIZE + x) * step];
+                        assertEquals(expected & 0xFFFFFF, image.getRGB(x, y) & 0xFFFFFF, "step " + step + " tile " + tile + " at " + x + "," + y);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package terrainGeneration;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class OpenSimplexLookupTest {
+
+    @Test
+    void flattenedTablesEqualTheContributionLists() {
+        Random random = new Random(1);
+        for (long seed : new long[]{0, 42, -7, Long.MAX_VALUE}) {
+            OpenSimplexNoise noise = new OpenSimplexNoise(seed);
+            for (int i = 0; i < 200_000; i++) {
+                float scale = i % 3 == 0 ? 10 : i % 3 == 1 ? 1000 : 100_000;
+                float x = (random.nextFloat() * 2 - 1) * scale;
+                float y = (random.nextFloat() * 2 - 1) * scale;
+                assertEquals(Float.floatToIntBits(noise.evalReference(x, y)), Float.floatToIntBits(noise.eval(x, y)),
+                        "seed " + seed + " at " + x + "," + y);
+            }
+        }
+    }
+
+    @Test
+    void latticePointsEqualTheContributionLists() {
+        OpenSimplexNoise noise = new OpenSimplexNoise(42);
+        for (int x = -64; x <= 64; x++) {
+            for (int y = -64; y <= 64; y++) {
+                assertEquals(Float.floatToIntBits(noise.evalReference(x * 0.5f, y * 0.5f)), Float.floatToIntBits(noise.eval(x * 0.5f, y * 0.5f)),
+                        "at " + x * 0.5f + "," + y * 0.5f);
+            }
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package terrainGeneration;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class OpenSimplexRowTest {
+
+    private final OpenSimplexNoise noise = new OpenSimplexNoise(42);
+
+    @Test
+    void rowEqualsEval() {
+        float[] out = new float[1003];
+        for (float y : new float[]{0, -3.7f, 12.25f, 1e5f}) {
+            for (float x0 : new float[]{0, -51.3f, 7.125f, 5e6f}) {
+                noise.evalRow(x0, y, 0.0173f, 1000, out, 3);
+                for (int i = 0; i < 1000; i++) {
+                    assertEquals(Float.floatToIntBits(noise.eval(x0 + i * 0.0173f, y)), Float.floatToIntBits(out[3 + i]),
+                            "x0 " + x0 + " y " + y + " i " + i);
+                }
+            }
+        }
+    }
+
+    @Test
+    void gridEqualsEval() {
+        int width = 77;
+        int height = 23;
+        int stride = 80;
+        float[] out = new float[5 + height * stride];
+        noise.evalGrid(-4.5f, 2.25f, 0.093f, 0.061f, width, height, out, 5, stride);
+        for (int j = 0; j < height; j++) {
+            for (int i = 0; i < width; i++) {
+                assertEquals(Float.floatToIntBits(noise.eval(-4.5f + i * 0.093f, 2.25f + j * 0.061f)),
+                        Float.floatToIntBits(out[5 + j * stride + i]), "i " + i + " j " + j);
+            }
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package terrainGeneration;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class OpenSimplexVectorTest {
+
+    @Test
+    void vectorRowsEqualEval() {
+        assumeTrue(OpenSimplexNoise.isVectorized(), "no vector kernel on this JVM");
+
+        OpenSimplexNoise noise = new OpenSimplexNoise(1234);
+        Random random = new Random(5);
+        // Lengths that end inside a group of lanes, and x that leaves the exact range of the kernel halfway.
+        for (int count : new int[]{ 1, 7, 16, 61, 509 }) {
+            for (float spread : new float[]{ 10, 1e4f, 1e7f }) {
+                float[] xs = new float[count + 2];
+                for (int i = 0; i < xs.length; i++) {
+                    xs[i] = (random.nextFloat() * 2 - 1) * spread;
+                }
+                float y = (random.nextFloat() * 2 - 1) * spread;
+
+                float[] out = new float[count + 1];
+                noise.evalRow(xs, 2, y, count, out, 1);
+                for (int i = 0; i < count; i++) {
+                    assertEquals(Float.floatToIntBits(noise.eval(xs[2 + i], y)), Float.floatToIntBits(out[1 + i]),
+                            "x " + xs[2 + i] + " y " + y);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package terrainGeneration;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+class ParallelGenerationTest {
+
+    private static final Vector OFFSET = new Vector(3.5f, -1.25f);
+
+    @Test
+    void bandedMapsEqualTheSerialMap() {
+        HeightMap serial = TerrainNoise.generateNoiseMap(300, 200, 42, 57.3f, 5, 0.5f, 2f, OFFSET, 1);
+        for (int threads : new int[]{2, 3, 7, 16}) {
+            HeightMap banded = TerrainNoise.generateNoiseMap(300, 200, 42, 57.3f, 5, 0.5f, 2f, OFFSET, threads);
+            assertArrayEquals(serial.data(), banded.data(), threads + " threads");
+        }
+    }
+
+    @Test
+    void callerExecutorEqualsTheSerialMap() {
+        HeightMap serial = TerrainNoise.generateNoiseMap(257, 131, 7, 40f, 4, 0.45f, 2.1f, OFFSET, null, 1);
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            for (int bands : new int[]{2, 5, 131, 500}) {
+                HeightMap banded = TerrainNoise.generateNoiseMap(257, 131, 7, 40f, 4, 0.45f, 2.1f, OFFSET, executor, bands);
+                assertArrayEquals(serial.data(), banded.data(), bands + " bands");
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package terrainGeneration;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ProgressiveGenerationTest {
+
+    @Test
+    void theLastLevelIsTheFullMap() {
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            for (boolean precise : new boolean[]{ false, true }) {
+                NoiseSettings settings = new NoiseSettings(13, 25, 4, 0.5f, 2f, 0.5f, 0, precise);
+                // Odd sizes that neither coarsest step divides.
+                HeightMap expected = new HeightMap(101, 67);
+                TerrainNoise.generateNoiseMap(expected, new FractalNoise(settings), settings, null, 1);
+
+                for (int coarsestStep : new int[]{ 8, 16 }) {
+                    for (ExecutorService pool : new ExecutorService[]{ null, executor }) {
+                        List<Integer> steps = new CopyOnWriteArrayList<>();
+                        HeightMap map = new HeightMap(101, 67);
+                        MapJob job = TerrainNoise.generateProgressiveAsync(map, new FractalNoise(settings), settings, pool, 5, coarsestStep,
+                                (step, level) -> steps.add(step), null);
+
+                        assertArrayEquals(expected.data(), job.result().join().data(), "precise " + precise + " step " + coarsestStep);
+                        List<Integer> levels = coarsestStep == 8 ? List.of(8, 4, 2, 1) : List.of(16, 8, 4, 2, 1);
+                        assertEquals(levels, steps);
+                    }
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
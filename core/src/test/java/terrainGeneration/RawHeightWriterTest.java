@@ -0,0 +1,46 @@
+package terrainGeneration;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class RawHeightWriterTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void writesLittleEndianRows() throws IOException {
+        HeightMap map = new HeightMap(13, 5);
+        float[] heights = map.data();
+        for (int i = 0; i < heights.length; i++) {
+            heights[i] = i / (heights.length - 1f) * 1.2f - 0.1f;
+        }
+
+        Path raw = directory.resolve("map.raw");
+        assertEquals(13 * 5 * 4, RawHeightWriter.write(map, raw, HeightMapFile.Format.FLOAT32));
+        ByteBuffer floats = ByteBuffer.wrap(Files.readAllBytes(raw)).order(ByteOrder.LITTLE_ENDIAN);
+        assertEquals(13 * 5 * 4, floats.capacity());
+
+        Path r16 = directory.resolve("map.r16");
+        assertEquals(13 * 5 * 2, RawHeightWriter.write(map, r16, HeightMapFile.Format.UINT16));
+        ByteBuffer shorts = ByteBuffer.wrap(Files.readAllBytes(r16)).order(ByteOrder.LITTLE_ENDIAN);
+        assertEquals(13 * 5 * 2, shorts.capacity());
+
+        for (int y = 0; y < 5; y++) {
+            for (int x = 0; x < 13; x++) {
+                float height = heights[map.index(x, y)];
+                assertEquals(Float.floatToIntBits(height), Float.floatToIntBits(floats.getFloat()), x + "," + y);
+                int quantized = Math.round(Math.max(0, Math.min(1, height)) * 65535);
+                assertEquals(quantized, Short.toUnsignedInt(shorts.getShort()), x + "," + y);
+            }
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package terrainGeneration;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StreamNoiseMapTest {
+
+    private static final int WIDTH = 53;
+    private static final int HEIGHT = 37;
+
+    private final NoiseSettings settings = new NoiseSettings(6, 30, 4, 0.5f, 2f, 0, 0, false);
+
+    @Test
+    void streamedRowsAreTheRowsOfTheMap() {
+        HeightMap expected = new HeightMap(WIDTH, HEIGHT);
+        TerrainNoise.generateNoiseMap(expected, settings, null, 1);
+        NoiseRange range = rawRange();
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            // One row at a time, windows that leave 2 rows for the last one, and a window taller than the map.
+            for (int windowRows : new int[]{ 1, 5, 64 }) {
+                for (ExecutorService pool : new ExecutorService[]{ null, executor }) {
+                    HeightMap streamed = new HeightMap(WIDTH, HEIGHT);
+                    int[] next = { 0 };
+                    TerrainNoise.streamNoiseMap(WIDTH, HEIGHT, settings, range, (y, row) -> {
+                        assertEquals(next[0]++, y);
+                        streamed.setRow(y, row, 0);
+                    }, pool, windowRows);
+
+                    assertEquals(HEIGHT, next[0]);
+                    assertArrayEquals(expected.data(), streamed.data(), "window " + windowRows);
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void heightsOutsideOfTheRangeAreClamped() {
+        TerrainNoise.streamNoiseMap(WIDTH, HEIGHT, settings, new NoiseRange(-0.05f, 0.05f), (y, row) -> {
+            for (int x = 0; x < WIDTH; x++) {
+                assertTrue(row[x] >= 0 && row[x] <= 1, "row " + y + " x " + x + ": " + row[x]);
+            }
+        });
+    }
+
+    // The range generateNoiseMap normalizes the map with.
+    private NoiseRange rawRange() {
+        NoiseSampler sampler = new NoiseSampler(new FractalNoise(settings), settings, -WIDTH / 2f, -HEIGHT / 2f, WIDTH);
+        float[] row = new float[WIDTH];
+        NoiseRange range = new NoiseRange();
+        for (int y = 0; y < HEIGHT; y++) {
+            sampler.fillRow(y, row, 0);
+            for (float height : row) {
+                range.include(height);
+            }
+        }
+        return range;
+    }
+}
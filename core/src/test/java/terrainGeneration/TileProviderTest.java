@@ -0,0 +1,32 @@
+package terrainGeneration;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+class TileProviderTest {
+
+    private final NoiseSettings settings = new NoiseSettings(42, 64, 3, 0.5f, 2f, 0, 0, true);
+
+    @Test
+    void tilesMatchTheirRegion() {
+        TileProvider tiles = new TileProvider(settings, 64, 4);
+        HeightMap region = TerrainNoise.generateRegion(new FractalNoise(settings), settings, -64, 128, 64, 64);
+        assertArrayEquals(region.data(), tiles.getTile(-1, 2).data());
+    }
+
+    @Test
+    void farTilesDoNotWrapAround() {
+        TileProvider tiles = new TileProvider(settings, 256, 4);
+        // 2^24 tiles of 256 pixels are 2^32 pixels, which wraps to 0 in int.
+        HeightMap far = tiles.getTile(1 << 24, 0);
+        HeightMap origin = tiles.getTile(0, 0);
+        assertFalse(Arrays.equals(far.data(), origin.data()));
+
+        HeightMap region = TerrainNoise.generateRegion(new FractalNoise(settings), settings, 0x1p32, 0, 256, 256);
+        assertArrayEquals(region.data(), far.data());
+    }
+}
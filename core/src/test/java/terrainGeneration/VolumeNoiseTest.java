@@ -0,0 +1,167 @@
+package terrainGeneration;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+class VolumeNoiseTest {
+
+    private final NoiseSettings settings = new NoiseSettings(7, 40, 4, 0.5f, 2f, 3.5f, -1.25f, false);
+
+    @Test
+    void framesMatchTheirOwnOctaveLoop() {
+        OpenSimplexNoise noise = new OpenSimplexNoise(settings.seed);
+        for (float time : new float[] { 0, 2.5f, 100 }) {
+            HeightMap frame = new HeightMap(37, 21);
+            TerrainNoise.generateFrame(frame, noise, settings, time);
+            assertArrayEquals(referenceFrame(noise, 37, 21, time), frame.data());
+        }
+    }
+
+    @Test
+    void seamlessRegionsUseTheFractalMode() {
+        FractalNoise fractal = new FractalNoise(new OpenSimplexNoise(settings.seed), FractalNoise.Mode.RIDGED, settings);
+        HeightMap region = TerrainNoise.generateSeamlessRegion(fractal, settings, 64, 48);
+
+        HeightMap fbm = TerrainNoise.generateSeamlessRegion(new OpenSimplexNoise(settings.seed), settings, 64, 48);
+        assertFalse(Arrays.equals(region.data(), fbm.data()));
+        for (float height : region.data()) {
+            assertEquals(0.5f, height, 0.5f);
+        }
+    }
+
+    @Test
+    void kernelsMatchASumOverAllNearbyVertices() {
+        Random random = new Random(8);
+        for (long seed : new long[]{ 0, 42, -7 }) {
+            OpenSimplexNoise noise = new OpenSimplexNoise(seed);
+            float[] xs = new float[300];
+            float[] ys = new float[300];
+            for (int i = 0; i < xs.length; i++) {
+                xs[i] = (random.nextFloat() * 2 - 1) * 50;
+                ys[i] = (random.nextFloat() * 2 - 1) * 50;
+            }
+            float z = (random.nextFloat() * 2 - 1) * 50;
+            float w = (random.nextFloat() * 2 - 1) * 50;
+
+            float[] row3D = new float[xs.length];
+            float[] row4D = new float[xs.length];
+            noise.evalRow(xs, 0, ys[0], z, xs.length, row3D, 0);
+            noise.evalRow(xs, ys, 0, z, w, xs.length, row4D, 0);
+            for (int i = 0; i < xs.length; i++) {
+                assertEquals(reference3D(noise, xs[i], ys[0], z), row3D[i], 1e-5, "3D at " + xs[i] + "," + ys[0] + "," + z);
+                assertEquals(reference4D(noise, xs[i], ys[i], z, w), row4D[i], 1e-5, "4D at " + xs[i] + "," + ys[i] + "," + z + "," + w);
+            }
+        }
+    }
+
+    // The contributions of every lattice vertex within the radius of the kernel, searched in the 4^3 vertices around
+    // the stretched cell rather than taken from the lattice tables, in double precision.
+    private static double reference3D(OpenSimplexNoise noise, double x, double y, double z) {
+        double stretch = (x + y + z) * OpenSimplexNoise.STRETCH_3D;
+        int xsb = (int) Math.floor(x + stretch);
+        int ysb = (int) Math.floor(y + stretch);
+        int zsb = (int) Math.floor(z + stretch);
+
+        double value = 0;
+        for (int px = xsb - 1; px <= xsb + 2; px++) {
+            for (int py = ysb - 1; py <= ysb + 2; py++) {
+                for (int pz = zsb - 1; pz <= zsb + 2; pz++) {
+                    double squish = (px + py + pz) * (double) OpenSimplexNoise.SQUISH_3D;
+                    double dx = x - (px + squish);
+                    double dy = y - (py + squish);
+                    double dz = z - (pz + squish);
+                    double attn = 2 - dx * dx - dy * dy - dz * dz;
+                    if (attn > 0) {
+                        int i = noise.permGradIndex3D[(noise.perm[(noise.perm[px & 0xFF] + py) & 0xFF] + pz) & 0xFF];
+                        float[] g = OpenSimplexNoise.gradients3D;
+                        value += attn * attn * attn * attn * (g[i] * dx + g[i + 1] * dy + g[i + 2] * dz);
+                    }
+                }
+            }
+        }
+        return value * OpenSimplexNoise.NORM_3D;
+    }
+
+    private static double reference4D(OpenSimplexNoise noise, double x, double y, double z, double w) {
+        double stretch = (x + y + z + w) * OpenSimplexNoise.STRETCH_4D;
+        int xsb = (int) Math.floor(x + stretch);
+        int ysb = (int) Math.floor(y + stretch);
+        int zsb = (int) Math.floor(z + stretch);
+        int wsb = (int) Math.floor(w + stretch);
+
+        double value = 0;
+        for (int px = xsb - 1; px <= xsb + 2; px++) {
+            for (int py = ysb - 1; py <= ysb + 2; py++) {
+                for (int pz = zsb - 1; pz <= zsb + 2; pz++) {
+                    for (int pw = wsb - 1; pw <= wsb + 2; pw++) {
+                        double squish = (px + py + pz + pw) * (double) OpenSimplexNoise.SQUISH_4D;
+                        double dx = x - (px + squish);
+                        double dy = y - (py + squish);
+                        double dz = z - (pz + squish);
+                        double dw = w - (pw + squish);
+                        double attn = 2 - dx * dx - dy * dy - dz * dz - dw * dw;
+                        if (attn > 0) {
+                            byte[] perm = noise.perm;
+                            int i = perm[(perm[(perm[(perm[px & 0xFF] + py) & 0xFF] + pz) & 0xFF] + pw) & 0xFF] & 0xFC;
+                            float[] g = OpenSimplexNoise.gradients4D;
+                            value += attn * attn * attn * attn * (g[i] * dx + g[i + 1] * dy + g[i + 2] * dz + g[i + 3] * dw);
+                        }
+                    }
+                }
+            }
+        }
+        return value * OpenSimplexNoise.NORM_4D;
+    }
+
+    // The octave loop generateFrame had before it was built on FractalNoise, kept to pin its output.
+    private float[] referenceFrame(OpenSimplexNoise noise, int width, int height, float time) {
+        HeightMap frame = new HeightMap(width, height);
+        float[] heights = frame.data();
+        float[] samples = new float[width];
+        float scale = settings.scale;
+        int octaves = settings.octaves;
+
+        float[] octaveX = new float[octaves * width];
+        float[] octaveY = new float[octaves];
+        float[] amplitudes = new float[octaves];
+        float[] frequencies = new float[octaves];
+
+        Random prng = new Random(settings.seed);
+        float amplitude = 1;
+        float frequency = 1;
+        for (int i = 0; i < octaves; i++) {
+            float offsetX = prng.nextInt(200001) - 100000 + settings.offsetX;
+            float offsetY = prng.nextInt(200001) - 100000 + settings.offsetY;
+            for (int x = 0; x < width; x++) {
+                octaveX[i * width + x] = ((x - width / 2f) / scale * frequency) + offsetX;
+            }
+            octaveY[i] = offsetY;
+            amplitudes[i] = amplitude;
+            frequencies[i] = frequency;
+            amplitude *= settings.persistance;
+            frequency *= settings.lacunarity;
+        }
+
+        for (int y = 0; y < height; y++) {
+            int row = frame.index(0, y);
+            for (int i = 0; i < octaves; i++) {
+                float sampleY = ((y - height / 2f) / scale * frequencies[i]) + octaveY[i];
+                float sampleZ = time / scale * frequencies[i];
+                noise.evalRow(octaveX, i * width, sampleY, sampleZ, width, samples, 0);
+                for (int x = 0; x < width; x++) {
+                    heights[row + x] += samples[x] * amplitudes[i];
+                }
+            }
+        }
+
+        NoiseRange range = settings.fixedRange();
+        frame.normalize(range.getMin(), range.getMax());
+        return frame.data();
+    }
+}
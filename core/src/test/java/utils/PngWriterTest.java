@@ -0,0 +1,108 @@
+package utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.awt.image.Raster;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.Adler32;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class PngWriterTest {
+
+    // Wide enough that the scanlines span several deflate chunks.
+    private static final int WIDTH = 733;
+    private static final int HEIGHT = 259;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void rgbImagesDecode() throws IOException {
+        Random random = new Random(1);
+        int[] pixels = new int[WIDTH * HEIGHT];
+        for (int i = 0; i < pixels.length; i++) {
+            // Smooth runs with some noise, so the filters and the compression both have work.
+            pixels[i] = (i % WIDTH) * 0x010203 + (random.nextInt(8) << 8) & 0xFFFFFF;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            for (ExecutorService pool : new ExecutorService[]{ null, executor }) {
+                Path path = directory.resolve("rgb.png");
+                PngWriter.writeRgb(pixels, WIDTH, HEIGHT, path, pool);
+
+                BufferedImage image = ImageIO.read(path.toFile());
+                assertEquals(WIDTH, image.getWidth());
+                assertEquals(HEIGHT, image.getHeight());
+                for (int y = 0; y < HEIGHT; y++) {
+                    for (int x = 0; x < WIDTH; x++) {
+                        assertEquals(pixels[y * WIDTH + x], image.getRGB(x, y) & 0xFFFFFF, x + "," + y);
+                    }
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void gray16ImagesDecode() throws IOException {
+        Random random = new Random(2);
+        int stride = WIDTH + 5;
+        float[] heights = new float[3 + HEIGHT * stride];
+        for (int i = 0; i < heights.length; i++) {
+            // Including heights outside of [0, 1], which are clamped.
+            heights[i] = random.nextFloat() * 1.2f - 0.1f;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Path path = directory.resolve("gray.png");
+            PngWriter.writeGray16(heights, 3, stride, WIDTH, HEIGHT, path, executor);
+
+            BufferedImage image = ImageIO.read(path.toFile());
+            assertEquals(WIDTH, image.getWidth());
+            assertEquals(HEIGHT, image.getHeight());
+            Raster raster = image.getRaster();
+            assertEquals(16, raster.getSampleModel().getSampleSize(0));
+            for (int y = 0; y < HEIGHT; y++) {
+                for (int x = 0; x < WIDTH; x++) {
+                    int expected = Math.round(MathUtils.clamp(heights[3 + y * stride + x], 0, 1) * 65535);
+                    assertEquals(expected, raster.getSample(x, y, 0), x + "," + y);
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void adlerChecksumsCombine() {
+        Random random = new Random(3);
+        for (int length : new int[]{ 0, 1, 5552, 70000 }) {
+            byte[] first = new byte[1000];
+            byte[] second = new byte[length];
+            random.nextBytes(first);
+            random.nextBytes(second);
+
+            Adler32 whole = new Adler32();
+            whole.update(first);
+            whole.update(second);
+            assertEquals((int) whole.getValue(), PngWriter.combineAdler(adler(first), adler(second), length), "length " + length);
+        }
+    }
+
+    private static int adler(byte[] bytes) {
+        Adler32 adler = new Adler32();
+        adler.update(bytes);
+        return (int) adler.getValue();
+    }
+}
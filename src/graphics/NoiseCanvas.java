@@ -1,20 +1,253 @@
 package graphics;
 
 import utils.Console;
+import utils.Metrics;
 
 import javax.swing.*;
 import java.awt.*;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseWheelEvent;
 import java.awt.image.BufferStrategy;
 import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+/**
+ * Paints single maps, or with {@link #showTiles} a viewport over an endless
+ * map that is panned by dragging and zoomed with the mouse wheel. The
+ * viewport only requests the tiles it shows, at the level of detail of the
+ * zoom, from a background pool, and draws the coarser tiles it already has
+ * where a tile is still missing. Drawing a frame only copies cached images,
+ * so it stays fast while new tiles stream in.
+ */
 public class NoiseCanvas extends Canvas {
 
     private static final long serialVersionUID = 1L;
 
+    private static final Metrics.Stage PAINT = Metrics.stage("paint");
+    private static final Metrics.Stage FRAME = Metrics.stage("viewport.frame");
+
+    // Zoom per notch of the mouse wheel.
+    private static final double ZOOM_STEP = 1.25;
+    private static final double MIN_ZOOM = 1.0 / (1 << TileCache.MAX_LEVEL);
+    private static final double MAX_ZOOM = 16;
+    // Keeps the tile coordinates in the int range of the tile sources.
+    private static final double MAX_CENTER = 1 << 29;
+    // How many levels coarser a tile may be to stand in for a missing one.
+    private static final int MAX_FALLBACK = 4;
+
+    // Only touched on the event dispatch thread.
+    private TileCache tiles;
+    private double centerX;
+    private double centerY;
+    private double zoom = 1;
+    private int dragX;
+    private int dragY;
+
+    private final AtomicBoolean frameQueued = new AtomicBoolean();
+
     public NoiseCanvas() {
         setIgnoreRepaint(true);
     }
 
+    // Turns the canvas into a viewport over the tiles of the source, centered on world pixel (0, 0). The tiles are
+    // rendered by a pool of daemon threads, one per processor.
+    public void showTiles(TileSource source) {
+        EventQueue.invokeLater(() -> {
+            if (tiles != null) {
+                tiles.shutdown();
+            } else {
+                addViewportListeners();
+            }
+            tiles = new TileCache(source, getGraphicsConfiguration(), Runtime.getRuntime().availableProcessors(), this::queueFrame);
+            renderFrame();
+        });
+    }
+
+    @Override
+    public void removeNotify() {
+        if (tiles != null) {
+            tiles.shutdown();
+        }
+        super.removeNotify();
+    }
+
+    private void addViewportListeners() {
+        MouseAdapter mouse = new MouseAdapter() {
+            @Override
+            public void mousePressed(MouseEvent e) {
+                dragX = e.getX();
+                dragY = e.getY();
+            }
+
+            @Override
+            public void mouseDragged(MouseEvent e) {
+                moveCenter(centerX - (e.getX() - dragX) / zoom, centerY - (e.getY() - dragY) / zoom);
+                dragX = e.getX();
+                dragY = e.getY();
+                renderFrame();
+            }
+
+            // Zooms around the pointer, the world pixel under it stays in place.
+            @Override
+            public void mouseWheelMoved(MouseWheelEvent e) {
+                double pointerX = e.getX() - getWidth() / 2.0;
+                double pointerY = e.getY() - getHeight() / 2.0;
+                double worldX = centerX + pointerX / zoom;
+                double worldY = centerY + pointerY / zoom;
+                zoom = Math.max(MIN_ZOOM, Math.min(MAX_ZOOM, zoom * Math.pow(ZOOM_STEP, -e.getPreciseWheelRotation())));
+                moveCenter(worldX - pointerX / zoom, worldY - pointerY / zoom);
+                renderFrame();
+            }
+        };
+        addMouseListener(mouse);
+        addMouseMotionListener(mouse);
+        addMouseWheelListener(mouse);
+        addComponentListener(new ComponentAdapter() {
+            @Override
+            public void componentResized(ComponentEvent e) {
+                renderFrame();
+            }
+        });
+    }
+
+    private void moveCenter(double x, double y) {
+        centerX = Math.max(-MAX_CENTER, Math.min(MAX_CENTER, x));
+        centerY = Math.max(-MAX_CENTER, Math.min(MAX_CENTER, y));
+    }
+
+    // Called by the tile threads, any number of new tiles before the next frame only queue one frame.
+    private void queueFrame() {
+        if (frameQueued.compareAndSet(false, true)) {
+            EventQueue.invokeLater(() -> {
+                frameQueued.set(false);
+                renderFrame();
+            });
+        }
+    }
+
+    private void renderFrame() {
+        if (tiles == null || !isDisplayable() || getWidth() <= 0 || getHeight() <= 0) {
+            return;
+        }
+        Metrics.Timer timer = FRAME.start();
+
+        BufferStrategy bs = prepareBuffer();
+        do {
+            do {
+                Graphics2D g2d = (Graphics2D) bs.getDrawGraphics();
+                g2d.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_SPEED);
+                g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
+                drawTiles(g2d);
+                g2d.dispose();
+            } while (bs.contentsRestored());
+            bs.show();
+        } while (bs.contentsLost());
+
+        timer.stop();
+    }
+
+    // Draws the tiles in view, requests the missing ones nearest to the center first, and drops the tiles that
+    // are out of view or more than one level finer than the ones shown.
+    private void drawTiles(Graphics2D g2d) {
+        // The finest level whose pixels are not smaller than the pixels of the screen.
+        int level = 0;
+        while (level < TileCache.MAX_LEVEL && (1 << (level + 1)) * zoom <= 1) {
+            level++;
+        }
+        double tileWorld = (double) TileCache.SIZE * (1 << level);
+
+        double left = centerX - getWidth() / 2.0 / zoom;
+        double top = centerY - getHeight() / 2.0 / zoom;
+        double right = centerX + getWidth() / 2.0 / zoom;
+        double bottom = centerY + getHeight() / 2.0 / zoom;
+
+        int fromX = (int) Math.floor(left / tileWorld);
+        int fromY = (int) Math.floor(top / tileWorld);
+        int toX = (int) Math.floor(right / tileWorld);
+        int toY = (int) Math.floor(bottom / tileWorld);
+
+        g2d.setColor(Color.DARK_GRAY);
+        g2d.fillRect(0, 0, getWidth(), getHeight());
+
+        List<int[]> missing = new ArrayList<>();
+        for (int tileY = fromY; tileY <= toY; tileY++) {
+            for (int tileX = fromX; tileX <= toX; tileX++) {
+                if (!drawTile(g2d, level, tileX, tileY)) {
+                    missing.add(new int[]{tileX, tileY});
+                }
+            }
+        }
+
+        double centerTileX = centerX / tileWorld - 0.5;
+        double centerTileY = centerY / tileWorld - 0.5;
+        missing.sort(Comparator.comparingDouble(tile -> Math.hypot(tile[0] - centerTileX, tile[1] - centerTileY)));
+        for (int[] tile : missing) {
+            tiles.request(level, tile[0], tile[1]);
+        }
+        // The ring around the view is prefetched after the tiles in view, so panning finds it ready.
+        for (int tileY = fromY - 1; tileY <= toY + 1; tileY++) {
+            for (int tileX = fromX - 1; tileX <= toX + 1; tileX++) {
+                if (tileX < fromX || tileX > toX || tileY < fromY || tileY > toY) {
+                    tiles.request(level, tileX, tileY);
+                }
+            }
+        }
+
+        int shownLevel = level;
+        tiles.retain((tileLevel, tileX, tileY) -> {
+            if (tileLevel < shownLevel - 1 || tileLevel > shownLevel + MAX_FALLBACK) {
+                return false;
+            }
+            double size = (double) TileCache.SIZE * (1 << tileLevel);
+            double tileLeft = tileX * size;
+            double tileTop = tileY * size;
+            return tileLeft < right + tileWorld && tileLeft + size > left - tileWorld
+                    && tileTop < bottom + tileWorld && tileTop + size > top - tileWorld;
+        });
+    }
+
+    // Draws the tile, or the part of a coarser tile that covers it. Returns false if the tile itself is missing.
+    private boolean drawTile(Graphics2D g2d, int level, int tileX, int tileY) {
+        double tileWorld = (double) TileCache.SIZE * (1 << level);
+        // Rounding both edges leaves no gaps between neighbouring tiles.
+        int x0 = screenX(tileX * tileWorld);
+        int y0 = screenY(tileY * tileWorld);
+        int x1 = screenX((tileX + 1) * tileWorld);
+        int y1 = screenY((tileY + 1) * tileWorld);
+
+        Image image = tiles.get(level, tileX, tileY);
+        if (image != null) {
+            g2d.drawImage(image, x0, y0, x1 - x0, y1 - y0, null);
+            return true;
+        }
+
+        for (int coarser = 1; coarser <= MAX_FALLBACK && level + coarser <= TileCache.MAX_LEVEL; coarser++) {
+            Image parent = tiles.get(level + coarser, tileX >> coarser, tileY >> coarser);
+            if (parent != null) {
+                int part = TileCache.SIZE >> coarser;
+                int partX = (tileX & ((1 << coarser) - 1)) * part;
+                int partY = (tileY & ((1 << coarser) - 1)) * part;
+                g2d.drawImage(parent, x0, y0, x1, y1, partX, partY, partX + part, partY + part, null);
+                break;
+            }
+        }
+        return false;
+    }
+
+    private int screenX(double worldX) {
+        return (int) Math.round((worldX - centerX) * zoom + getWidth() / 2.0);
+    }
+
+    private int screenY(double worldY) {
+        return (int) Math.round((worldY - centerY) * zoom + getHeight() / 2.0);
+    }
+
     private BufferStrategy prepareBuffer() {
         BufferStrategy bs = this.getBufferStrategy();
         if (bs == null) {
@@ -39,6 +272,7 @@ public class NoiseCanvas extends Canvas {
 
     public void paintMap(BufferedImage image) {
         Console.log("Drawing...");
+        Metrics.Timer timer = PAINT.start();
 
         JFrame frame = (JFrame) this.getParent().getParent().getParent().getParent().getParent();
         frame.setVisible(true);
@@ -53,6 +287,7 @@ public class NoiseCanvas extends Canvas {
 
         g2d.dispose();
         bs.show();
+        timer.stop((long) image.getWidth() * image.getHeight());
         Console.log("Done.");
     }
 
@@ -0,0 +1,152 @@
+package graphics;
+
+import utils.Console;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The tiles of a {@link NoiseCanvas} viewport, rendered on demand by a pool
+ * of background threads and kept as images compatible with the screen, so
+ * drawing them is a plain copy. A tile of level l covers {@code SIZE << l}
+ * world pixels, one pixel every 2^l world pixels. Requested and cached
+ * tiles are dropped as soon as the viewport no longer needs them.
+ */
+final class TileCache {
+
+    static final int SIZE = 256;
+    // The coarsest level, a tile of it covers 2^24 world pixels.
+    static final int MAX_LEVEL = 16;
+
+    // Decides which tiles to keep, by level and tile coordinates.
+    @FunctionalInterface
+    interface TileFilter {
+        boolean keep(int level, int tileX, int tileY);
+    }
+
+    private final TileSource source;
+    private final GraphicsConfiguration configuration;
+    private final Runnable tileReady;
+    private final ExecutorService pool;
+
+    private final Map<Long, Image> tiles = new ConcurrentHashMap<>();
+    private final Map<Long, Future<?>> pending = new ConcurrentHashMap<>();
+
+    // A null configuration keeps the tiles as rendered. tileReady is called on a pool thread for every new tile.
+    TileCache(TileSource source, GraphicsConfiguration configuration, int threads, Runnable tileReady) {
+        this.source = source;
+        this.configuration = configuration;
+        this.tileReady = tileReady;
+
+        AtomicInteger count = new AtomicInteger();
+        this.pool = Executors.newFixedThreadPool(Math.max(1, threads), task -> {
+            Thread thread = new Thread(task, "tile-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            thread.setPriority(Thread.NORM_PRIORITY - 1);
+            return thread;
+        });
+    }
+
+    // The tile, or null if it has not been rendered yet.
+    Image get(int level, int tileX, int tileY) {
+        return tiles.get(key(level, tileX, tileY));
+    }
+
+    // Queues the tile for rendering unless it is cached or queued already. Tiles are rendered in request order.
+    void request(int level, int tileX, int tileY) {
+        long key = key(level, tileX, tileY);
+        if (tiles.containsKey(key) || pending.containsKey(key)) {
+            return;
+        }
+        // Registered before it runs, so a quick render cannot find its entry missing.
+        FutureTask<Void> task = new FutureTask<>(() -> render(key, level, tileX, tileY), null);
+        pending.put(key, task);
+        pool.execute(task);
+    }
+
+    // Drops the cached and queued tiles the filter does not keep.
+    void retain(TileFilter filter) {
+        for (Iterator<Long> keys = tiles.keySet().iterator(); keys.hasNext(); ) {
+            long key = keys.next();
+            if (!filter.keep(level(key), tileX(key), tileY(key))) {
+                keys.remove();
+            }
+        }
+        for (Iterator<Map.Entry<Long, Future<?>>> entries = pending.entrySet().iterator(); entries.hasNext(); ) {
+            Map.Entry<Long, Future<?>> entry = entries.next();
+            long key = entry.getKey();
+            if (!filter.keep(level(key), tileX(key), tileY(key))) {
+                entry.getValue().cancel(false);
+                entries.remove();
+            }
+        }
+    }
+
+    int size() {
+        return tiles.size();
+    }
+
+    void shutdown() {
+        pool.shutdownNow();
+        pending.clear();
+        tiles.clear();
+    }
+
+    private void render(long key, int level, int tileX, int tileY) {
+        // Dropped while waiting in the queue.
+        if (!pending.containsKey(key)) {
+            return;
+        }
+        try {
+            int step = 1 << level;
+            BufferedImage image = source.renderTile(tileX * SIZE * step, tileY * SIZE * step, SIZE, step);
+            Image tile = compatible(image);
+            // Only kept if it has not been dropped while rendering.
+            if (pending.remove(key) != null) {
+                tiles.put(key, tile);
+                tileReady.run();
+            }
+        } catch (RuntimeException e) {
+            pending.remove(key);
+            Console.log("Tile " + level + "/" + tileX + "/" + tileY + " failed: " + e);
+        }
+    }
+
+    // Copies the image into one laid out like the screen, which can be drawn without a conversion and be cached
+    // in video memory.
+    private Image compatible(BufferedImage image) {
+        if (configuration == null || image.getColorModel().equals(configuration.getColorModel())) {
+            return image;
+        }
+        BufferedImage compatible = configuration.createCompatibleImage(image.getWidth(), image.getHeight());
+        Graphics2D g2d = compatible.createGraphics();
+        g2d.drawImage(image, 0, 0, null);
+        g2d.dispose();
+        return compatible;
+    }
+
+    // The level in the top 6 bits, the signed tile coordinates in 29 bits each.
+    static long key(int level, int tileX, int tileY) {
+        return (long) level << 58 | (tileX & 0x1FFFFFFFL) << 29 | (tileY & 0x1FFFFFFFL);
+    }
+
+    static int level(long key) {
+        return (int) (key >>> 58);
+    }
+
+    static int tileX(long key) {
+        return (int) (key << 6 >> 35);
+    }
+
+    static int tileY(long key) {
+        return (int) (key << 35 >> 35);
+    }
+}
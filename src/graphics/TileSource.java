@@ -0,0 +1,15 @@
+package graphics;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * Renders the square tiles a {@link NoiseCanvas} shows in its viewport.
+ * Called concurrently from the tile pool, implementations have to be
+ * thread-safe.
+ */
+@FunctionalInterface
+public interface TileSource {
+
+    // The size x size image whose pixel (x, y) shows world pixel (originX + x * step, originY + y * step).
+    BufferedImage renderTile(int originX, int originY, int size, int step);
+}
@@ -0,0 +1,421 @@
+package main;
+
+import terrainGeneration.DomainWarp;
+import terrainGeneration.Erosion;
+import terrainGeneration.ErosionSettings;
+import terrainGeneration.FractalNoise;
+import terrainGeneration.HeightMap;
+import terrainGeneration.HeightMapFile;
+import terrainGeneration.MapGenerator;
+import terrainGeneration.NoiseCache;
+import terrainGeneration.NoiseSettings;
+import terrainGeneration.NoiseSource;
+import terrainGeneration.RawHeightWriter;
+import terrainGeneration.TerrainNoise;
+import terrainGeneration.TileCoordinator;
+import terrainGeneration.TileWorker;
+import utils.ColorRamp;
+import utils.Console;
+import utils.Metrics;
+import utils.PngWriter;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Headless entry point that renders maps without opening a window.
+ * <p>
+ * A single job is described on the command line:
+ * <pre>
+ *   --seed 42 --size 1024x1024 --octaves 5 --persistance 0.5 --lacunarity 2
+ *   --scale 1024 --offset 0,0 --precise false --fractal fbm --warp 0
+ *   --erode 0 --thermal 0 --talus 0.001 --ramp gradient --out map.png
+ * </pre>
+ * {@code fractal} is one of fbm, ridged, billow and turbulence, a {@code warp}
+ * above zero bends the map by noise of the next seed. {@code --erode droplets}
+ * and {@code --thermal iterations} run {@link Erosion} on the map before it is
+ * written, {@code --talus} sets the slope thermal erosion keeps.
+ * With {@code --jobs file} every non-empty line of the file that does not
+ * start with {@code #} is a job of {@code key=value} pairs, the command line
+ * options serve as defaults for all of them. The output format follows the
+ * extension of {@code out}: {@code .png} for a colored image, or a 16-bit
+ * grayscale one with {@code --png gray16}, {@code .hmap} for a
+ * {@link HeightMapFile}, {@code .raw} and {@code .r16} for headerless
+ * little-endian float32 and uint16 heights. {@code --threads n} sets the
+ * worker count, {@code --metrics file.json} writes the {@link Metrics} of
+ * the run.
+ * <p>
+ * {@code --serve port} turns the process into a {@link TileWorker} instead,
+ * which renders tiles until it is killed. It listens on the loopback
+ * interface, {@code --bind address} listens on another one, {@code 0.0.0.0}
+ * on all of them. A {@code .hmap} job with
+ * {@code --workers host:port,host:port} is split into tiles of
+ * {@code --tile 1024} by a {@link TileCoordinator} and rendered on those
+ * workers into the same map the job writes without workers. Such jobs
+ * cannot be eroded.
+ * <p>
+ * Every job is checked before the first one is rendered. Exits with 0 once
+ * every file has been written, 1 if any job failed and 2 for invalid
+ * arguments, an unknown option or a value that does not parse.
+ */
+public class BatchRenderer implements AutoCloseable {
+
+    public static final int EXIT_OK = 0;
+    public static final int EXIT_FAILED = 1;
+    public static final int EXIT_USAGE = 2;
+
+    private static final Metrics.Stage ENCODE_PNG = Metrics.stage("encode.png");
+    private static final Metrics.Stage WRITE_HEIGHT_MAP = Metrics.stage("write.heightmap");
+
+    private final int threads;
+    private final ForkJoinPool pool;
+
+    // Reused between jobs of the same size.
+    private HeightMap noiseMap;
+    private BufferedImage image;
+
+    public BatchRenderer(int threads) {
+        this.threads = Math.max(1, threads);
+        this.pool = new ForkJoinPool(this.threads);
+    }
+
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+        System.exit(run(args));
+    }
+
+    public static int run(String[] args) {
+        List<Job> jobs;
+        int threads;
+        String metricsFile;
+        try {
+            Map<String, String> defaults = parseArguments(args);
+            threads = defaults.containsKey("threads") ? Integer.parseInt(defaults.remove("threads")) : Runtime.getRuntime().availableProcessors();
+
+            String serve = defaults.remove("serve");
+            if (serve != null) {
+                String bind = defaults.remove("bind");
+                InetAddress address = bind == null ? InetAddress.getLoopbackAddress() : InetAddress.getByName(bind);
+                return serve(address, Integer.parseInt(serve), threads);
+            }
+
+            metricsFile = defaults.remove("metrics");
+            String jobFile = defaults.remove("jobs");
+            jobs = new ArrayList<>();
+            if (jobFile == null) {
+                jobs.add(Job.parse(defaults));
+            } else {
+                for (String line : Files.readAllLines(Paths.get(jobFile), StandardCharsets.UTF_8)) {
+                    line = line.trim();
+                    if (line.isEmpty() || line.startsWith("#")) {
+                        continue;
+                    }
+                    Map<String, String> job = new LinkedHashMap<>(defaults);
+                    for (String pair : line.split("\\s+")) {
+                        int separator = pair.indexOf('=');
+                        if (separator <= 0) {
+                            throw new IllegalArgumentException("Expected key=value but got " + pair + " in " + jobFile);
+                        }
+                        job.put(pair.substring(0, separator), pair.substring(separator + 1));
+                    }
+                    try {
+                        jobs.add(Job.parse(job));
+                    } catch (IllegalArgumentException e) {
+                        throw new IllegalArgumentException("Job " + (jobs.size() + 1) + ": " + e.getMessage(), e);
+                    }
+                }
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            Console.log("Invalid arguments: " + e.getMessage());
+            return EXIT_USAGE;
+        }
+
+        int failed = 0;
+        try (BatchRenderer renderer = new BatchRenderer(threads)) {
+            for (int i = 0; i < jobs.size(); i++) {
+                try {
+                    renderer.render(jobs.get(i));
+                } catch (Exception e) {
+                    Console.log("Job " + (i + 1) + " failed: " + e);
+                    failed++;
+                }
+            }
+        }
+
+        Console.log("Rendered " + (jobs.size() - failed) + " of " + jobs.size() + " maps");
+
+        if (metricsFile != null) {
+            try {
+                Files.write(Paths.get(metricsFile), Metrics.toJson().getBytes(StandardCharsets.UTF_8));
+            } catch (IOException e) {
+                Console.log("Could not write the metrics: " + e);
+                failed++;
+            }
+        }
+        return failed == 0 ? EXIT_OK : EXIT_FAILED;
+    }
+
+    // Renders tiles for coordinators until the process is killed.
+    private static int serve(InetAddress address, int port, int threads) {
+        try {
+            TileWorker.start(address, port, threads);
+            new CountDownLatch(1).await();
+            return EXIT_OK;
+        } catch (IOException e) {
+            Console.log("Could not start the worker: " + e);
+            return EXIT_FAILED;
+        } catch (InterruptedException e) {
+            return EXIT_OK;
+        }
+    }
+
+    // Accepts "--key value" and "--key=value".
+    static Map<String, String> parseArguments(String[] args) {
+        Map<String, String> options = new LinkedHashMap<>();
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (!arg.startsWith("--")) {
+                throw new IllegalArgumentException("Unexpected argument " + arg);
+            }
+            int separator = arg.indexOf('=');
+            if (separator > 0) {
+                options.put(arg.substring(2, separator), arg.substring(separator + 1));
+            } else if (i + 1 < args.length) {
+                options.put(arg.substring(2), args[++i]);
+            } else {
+                throw new IllegalArgumentException("Missing value for " + arg);
+            }
+        }
+        return options;
+    }
+
+    public void render(Map<String, String> job) throws IOException {
+        render(Job.parse(job));
+    }
+
+    void render(Job job) throws IOException {
+        int width = job.width;
+        int height = job.height;
+        NoiseSettings settings = job.settings;
+        String out = job.out;
+
+        NoiseSource source = new FractalNoise(NoiseCache.shared().get(settings.seed), job.mode, settings);
+        if (job.warp > 0) {
+            source = new DomainWarp(source, NoiseCache.shared().get(settings.seed + 1), job.warp);
+        }
+
+        Console.log("Job: " + settings + " Fractal: " + job.mode + " Warp: " + job.warp + " Size: " + width + "x" + height + " -> " + out);
+
+        if (job.workers != null) {
+            TileCoordinator coordinator = new TileCoordinator(job.workers, job.tile);
+            Metrics.Timer timer = WRITE_HEIGHT_MAP.start();
+            try (HeightMapFile file = HeightMapFile.create(Paths.get(out), width, height, 256, HeightMapFile.Format.FLOAT32, settings,
+                    job.mode, job.warp, false)) {
+                coordinator.render(file);
+            }
+            timer.stop(MapGenerator.countWritten(new File(out)));
+            return;
+        }
+
+        if (noiseMap == null || noiseMap.getWidth() != width || noiseMap.getHeight() != height) {
+            noiseMap = new HeightMap(width, height);
+            image = null;
+        }
+
+        TerrainNoise.generateNoiseMap(noiseMap, source, settings, pool, threads * 4);
+
+        if (job.droplets > 0 || job.thermalIterations > 0) {
+            Erosion.erode(noiseMap, new ErosionSettings(settings.seed, job.droplets, job.thermalIterations, job.talus), pool);
+        }
+
+        if (out.endsWith(".hmap")) {
+            Metrics.Timer timer = WRITE_HEIGHT_MAP.start();
+            boolean eroded = job.droplets > 0 || job.thermalIterations > 0;
+            try (HeightMapFile file = HeightMapFile.create(Paths.get(out), width, height, 256, HeightMapFile.Format.FLOAT32, settings,
+                    job.mode, job.warp, eroded)) {
+                file.writeRegion(0, 0, noiseMap);
+            }
+            timer.stop(MapGenerator.countWritten(new File(out)));
+        } else if (out.endsWith(".raw") || out.endsWith(".r16")) {
+            Metrics.Timer timer = WRITE_HEIGHT_MAP.start();
+            RawHeightWriter.write(noiseMap, Paths.get(out), out.endsWith(".r16") ? HeightMapFile.Format.UINT16 : HeightMapFile.Format.FLOAT32);
+            timer.stop(MapGenerator.countWritten(new File(out)));
+        } else if (job.gray16) {
+            Metrics.Timer timer = ENCODE_PNG.start();
+            PngWriter.writeGray16(noiseMap.data(), noiseMap.getOffset(), noiseMap.getStride(), width, height, Paths.get(out), pool);
+            timer.stop(MapGenerator.countWritten(new File(out)));
+        } else {
+            if (image == null) {
+                image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            }
+            MapGenerator.colorize(noiseMap, job.ramp, image, pool);
+            Metrics.Timer timer = ENCODE_PNG.start();
+            int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+            PngWriter.writeRgb(pixels, width, height, Paths.get(out), pool);
+            timer.stop(MapGenerator.countWritten(new File(out)));
+        }
+    }
+
+    @Override
+    public void close() {
+        pool.shutdown();
+    }
+
+    /**
+     * A job with every value parsed and checked, so bad input is reported
+     * before the first map is rendered.
+     */
+    static final class Job {
+
+        private static final Set<String> KEYS = Set.of("seed", "size", "octaves", "persistance", "lacunarity", "scale", "offset",
+                "precise", "fractal", "warp", "erode", "thermal", "talus", "ramp", "png", "out", "workers", "tile");
+
+        final String out;
+        final int width;
+        final int height;
+        final NoiseSettings settings;
+        final FractalNoise.Mode mode;
+        final float warp;
+        final int droplets;
+        final int thermalIterations;
+        final float talus;
+        final ColorRamp ramp;
+        final boolean gray16;
+        // Null to render locally.
+        final List<InetSocketAddress> workers;
+        final int tile;
+
+        private Job(Map<String, String> job) {
+            for (String key : job.keySet()) {
+                if (!KEYS.contains(key)) {
+                    throw new IllegalArgumentException("Unknown option " + key);
+                }
+            }
+
+            out = job.get("out");
+            if (out == null) {
+                throw new IllegalArgumentException("Missing out");
+            }
+            if (!out.endsWith(".png") && !out.endsWith(".hmap") && !out.endsWith(".raw") && !out.endsWith(".r16")) {
+                throw new IllegalArgumentException("Unknown output format " + out);
+            }
+
+            String[] size = job.getOrDefault("size", "1024x1024").split("x");
+            width = positive("size", size[0]);
+            height = positive("size", size.length > 1 ? size[1] : size[0]);
+
+            String[] offset = job.getOrDefault("offset", "0,0").split(",");
+            settings = new NoiseSettings(
+                    parseInt("seed", job.getOrDefault("seed", "42")),
+                    parseFloat("scale", job.getOrDefault("scale", "1024")),
+                    positive("octaves", job.getOrDefault("octaves", "5")),
+                    parseFloat("persistance", job.getOrDefault("persistance", "0.5")),
+                    parseFloat("lacunarity", job.getOrDefault("lacunarity", "2")),
+                    parseFloat("offset", offset[0]), parseFloat("offset", offset.length > 1 ? offset[1] : offset[0]),
+                    parseBoolean("precise", job.getOrDefault("precise", "false")));
+
+            String fractal = job.getOrDefault("fractal", "fbm");
+            try {
+                mode = FractalNoise.Mode.valueOf(fractal.toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown fractal " + fractal);
+            }
+            warp = parseFloat("warp", job.getOrDefault("warp", "0"));
+
+            droplets = notNegative("erode", job.getOrDefault("erode", "0"));
+            thermalIterations = notNegative("thermal", job.getOrDefault("thermal", "0"));
+            talus = parseFloat("talus", job.getOrDefault("talus", Float.toString(ErosionSettings.DEFAULT_TALUS)));
+
+            ramp = ramp(job.getOrDefault("ramp", "gradient"));
+            String png = job.getOrDefault("png", "rgb");
+            if (!png.equals("rgb") && !png.equals("gray16")) {
+                throw new IllegalArgumentException("Unknown png format " + png);
+            }
+            gray16 = png.equals("gray16");
+
+            String workerList = job.get("workers");
+            if (workerList != null) {
+                if (!out.endsWith(".hmap")) {
+                    throw new IllegalArgumentException("Workers only render .hmap files");
+                }
+                if (droplets > 0 || thermalIterations > 0) {
+                    throw new IllegalArgumentException("Maps rendered on workers cannot be eroded");
+                }
+                workers = TileCoordinator.parseWorkers(workerList);
+            } else {
+                workers = null;
+            }
+            tile = positive("tile", job.getOrDefault("tile", "1024"));
+        }
+
+        static Job parse(Map<String, String> job) {
+            return new Job(job);
+        }
+
+        private static int parseInt(String key, String value) {
+            try {
+                return Integer.parseInt(value);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid " + key + " " + value);
+            }
+        }
+
+        private static int positive(String key, String value) {
+            int parsed = parseInt(key, value);
+            if (parsed <= 0) {
+                throw new IllegalArgumentException(key + " has to be positive but was " + value);
+            }
+            return parsed;
+        }
+
+        private static int notNegative(String key, String value) {
+            int parsed = parseInt(key, value);
+            if (parsed < 0) {
+                throw new IllegalArgumentException(key + " cannot be negative but was " + value);
+            }
+            return parsed;
+        }
+
+        private static float parseFloat(String key, String value) {
+            try {
+                return Float.parseFloat(value);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid " + key + " " + value);
+            }
+        }
+
+        private static boolean parseBoolean(String key, String value) {
+            if (!value.equals("true") && !value.equals("false")) {
+                throw new IllegalArgumentException("Invalid " + key + " " + value + ", expected true or false");
+            }
+            return Boolean.parseBoolean(value);
+        }
+    }
+
+    private static ColorRamp ramp(String name) {
+        switch (name) {
+            case "gradient":
+                return ColorRamp.gradient(Color.black, Color.green);
+            case "terrain":
+                return ColorRamp.terrain();
+            default:
+                throw new IllegalArgumentException("Unknown ramp " + name);
+        }
+    }
+}
@@ -9,7 +9,8 @@ import javax.swing.*;
 
 public class Starter {
 
-    public Starter() {
+    // Generates a single map and writes it to files, or with viewer set opens a viewport to explore the map instead.
+    public Starter(boolean viewer) {
         byte testByte = Byte.MAX_VALUE;
         testByte++;
 
@@ -37,12 +38,23 @@ public class Starter {
         frame.setDefaultCloseOperation(WindowConstants.EXIT_ON_CLOSE);
 
         MapGenerator mapGenerator = new MapGenerator(canvas);
-        mapGenerator.generateMap();
+        if (viewer) {
+            frame.setVisible(true);
+            canvas.showTiles(mapGenerator.tiles());
+        } else {
+            mapGenerator.generateMap();
+        }
     }
 
 
+    // Usage: Starter [--viewer]
     public static void main(String[] args) {
-        new Starter();
+        if (args.length > 1 || (args.length == 1 && !args[0].equals("--viewer"))) {
+            Console.log("Usage: Starter [--viewer]");
+            Console.log("    Generates a map and writes it to files, --viewer opens a viewport to explore the map instead.");
+            System.exit(2);
+        }
+        new Starter(args.length == 1);
     }
 
 }
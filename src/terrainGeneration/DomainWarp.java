@@ -0,0 +1,128 @@
+package terrainGeneration;
+
+/**
+ * Samples a source at coordinates displaced by a second noise, which bends
+ * the shapes of the source into swirls and folds. The displacement in x and
+ * y are two decorrelated samples of the warp source, strength is the largest
+ * displacement for a warp source in [-1, 1].
+ */
+public final class DomainWarp implements NoiseSource {
+
+    // Where the y displacement is sampled relative to the x displacement, far enough to be uncorrelated.
+    private static final float WARP_OFFSET_X = 5.2f;
+    private static final float WARP_OFFSET_Y = 1.3f;
+
+    private final NoiseSource source;
+    private final NoiseSource warp;
+    private final float strength;
+
+    private final ScratchBuffers scratch = new ScratchBuffers(4);
+
+    public DomainWarp(NoiseSource source, NoiseSource warp, float strength) {
+        this.source = source;
+        this.warp = warp;
+        this.strength = strength;
+    }
+
+    @Override
+    public float eval(float x, float y) {
+        float warpX = warp.eval(x, y);
+        float warpY = warp.eval(x + WARP_OFFSET_X, y + WARP_OFFSET_Y);
+        return source.eval(x + strength * warpX, y + strength * warpY);
+    }
+
+    @Override
+    public double eval(double x, double y) {
+        double warpX = warp.eval(x, y);
+        double warpY = warp.eval(x + WARP_OFFSET_X, y + WARP_OFFSET_Y);
+        return source.eval(x + strength * warpX, y + strength * warpY);
+    }
+
+    @Override
+    public void evalRow(float[] xs, int xsOffset, float y, int count, float[] out, int offset) {
+        float[] warpedXs = scratch.floats(0, count);
+        float[] warpedYs = scratch.floats(1, count);
+        float[] warpX = scratch.floats(2, count);
+        float[] warpY = scratch.floats(3, count);
+
+        for (int i = 0; i < count; i++) {
+            warpedXs[i] = xs[xsOffset + i] + WARP_OFFSET_X;
+        }
+        warp.evalRow(xs, xsOffset, y, count, warpX, 0);
+        warp.evalRow(warpedXs, 0, y + WARP_OFFSET_Y, count, warpY, 0);
+
+        for (int i = 0; i < count; i++) {
+            warpedXs[i] = xs[xsOffset + i] + strength * warpX[i];
+            warpedYs[i] = y + strength * warpY[i];
+        }
+        source.evalPoints(warpedXs, warpedYs, 0, count, out, offset);
+    }
+
+    @Override
+    public void evalRow(double[] xs, int xsOffset, double y, int count, float[] out, int offset) {
+        double[] warpedXs = scratch.doubles(0, count);
+        double[] warpedYs = scratch.doubles(1, count);
+        float[] warpX = scratch.floats(2, count);
+        float[] warpY = scratch.floats(3, count);
+
+        for (int i = 0; i < count; i++) {
+            warpedXs[i] = xs[xsOffset + i] + WARP_OFFSET_X;
+        }
+        warp.evalRow(xs, xsOffset, y, count, warpX, 0);
+        warp.evalRow(warpedXs, 0, y + WARP_OFFSET_Y, count, warpY, 0);
+
+        for (int i = 0; i < count; i++) {
+            warpedXs[i] = xs[xsOffset + i] + strength * warpX[i];
+            warpedYs[i] = y + strength * warpY[i];
+        }
+        source.evalPoints(warpedXs, warpedYs, 0, count, out, offset);
+    }
+
+    @Override
+    public void evalPoints(float[] xs, float[] ys, int xyOffset, int count, float[] out, int offset) {
+        float[] warpedXs = scratch.floats(0, count);
+        float[] warpedYs = scratch.floats(1, count);
+        float[] warpX = scratch.floats(2, count);
+        float[] warpY = scratch.floats(3, count);
+
+        for (int i = 0; i < count; i++) {
+            warpedXs[i] = xs[xyOffset + i] + WARP_OFFSET_X;
+            warpedYs[i] = ys[xyOffset + i] + WARP_OFFSET_Y;
+        }
+        warp.evalPoints(xs, ys, xyOffset, count, warpX, 0);
+        warp.evalPoints(warpedXs, warpedYs, 0, count, warpY, 0);
+
+        for (int i = 0; i < count; i++) {
+            warpedXs[i] = xs[xyOffset + i] + strength * warpX[i];
+            warpedYs[i] = ys[xyOffset + i] + strength * warpY[i];
+        }
+        source.evalPoints(warpedXs, warpedYs, 0, count, out, offset);
+    }
+
+    @Override
+    public void evalPoints(double[] xs, double[] ys, int xyOffset, int count, float[] out, int offset) {
+        double[] warpedXs = scratch.doubles(0, count);
+        double[] warpedYs = scratch.doubles(1, count);
+        float[] warpX = scratch.floats(2, count);
+        float[] warpY = scratch.floats(3, count);
+
+        for (int i = 0; i < count; i++) {
+            warpedXs[i] = xs[xyOffset + i] + WARP_OFFSET_X;
+            warpedYs[i] = ys[xyOffset + i] + WARP_OFFSET_Y;
+        }
+        warp.evalPoints(xs, ys, xyOffset, count, warpX, 0);
+        warp.evalPoints(warpedXs, warpedYs, 0, count, warpY, 0);
+
+        for (int i = 0; i < count; i++) {
+            warpedXs[i] = xs[xyOffset + i] + strength * warpX[i];
+            warpedYs[i] = ys[xyOffset + i] + strength * warpY[i];
+        }
+        source.evalPoints(warpedXs, warpedYs, 0, count, out, offset);
+    }
+
+    // Warping moves the samples, it does not change their bounds.
+    @Override
+    public NoiseRange range() {
+        return source.range();
+    }
+}
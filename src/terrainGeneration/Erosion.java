@@ -0,0 +1,354 @@
+package terrainGeneration;
+
+import utils.Console;
+import utils.Metrics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Erodes a height map in place, hydraulic erosion by water droplets that
+ * carve channels and deposit sediment downhill, then thermal erosion that
+ * lets slopes steeper than the talus crumble.
+ * <p>
+ * The droplets are simulated in parallel without locks. The map is split
+ * into tiles wider than twice the distance a droplet can reach, and the
+ * tiles are processed in four phases by the parity of their column and
+ * row, so no two tiles of a phase touch the same cells. The start positions
+ * come from a single generator and every tile simulates its droplets in
+ * order, so the result only depends on the seed, not on the thread count.
+ * Thermal erosion reads one buffer and writes the other, every cell gathers
+ * its own change, which is deterministic as well.
+ */
+public final class Erosion {
+
+    // Steps before a droplet evaporates, it moves one cell per step.
+    private static final int MAX_LIFETIME = 30;
+    // Direction kept from the last step, the rest follows the slope.
+    private static final float INERTIA = 0.05f;
+    private static final float SEDIMENT_CAPACITY = 4;
+    private static final float MIN_SEDIMENT_CAPACITY = 0.01f;
+    private static final float ERODE_SPEED = 0.3f;
+    private static final float DEPOSIT_SPEED = 0.3f;
+    private static final float EVAPORATE_SPEED = 0.01f;
+    private static final float GRAVITY = 4;
+    private static final float INITIAL_WATER = 1;
+    private static final float INITIAL_SPEED = 1;
+    // Erosion is spread over the cells in this radius, eroding a single cell digs pits.
+    private static final int BRUSH_RADIUS = 2;
+
+    // Wider than twice the reach of a droplet, the lifetime plus the brush and the cell it interpolates in.
+    private static final int TILE_SIZE = 2 * (MAX_LIFETIME + BRUSH_RADIUS + 2);
+    // Droplets per round, every round runs all four phases, so the erosion is spread evenly over the map.
+    private static final int ROUND_DROPLETS = 1 << 18;
+
+    // Fraction of the height difference above the talus that moves per pass, at most 1/8 so four neighbours cannot overshoot.
+    private static final float THERMAL_RATE = 0.125f;
+
+    private static final Metrics.Stage HYDRAULIC = Metrics.stage("erosion.hydraulic");
+    private static final Metrics.Stage THERMAL = Metrics.stage("erosion.thermal");
+
+    private static final int[] BRUSH_X;
+    private static final int[] BRUSH_Y;
+    private static final float[] BRUSH_WEIGHTS;
+
+    static {
+        List<int[]> cells = new ArrayList<>();
+        List<Float> weights = new ArrayList<>();
+        float sum = 0;
+        for (int y = -BRUSH_RADIUS; y <= BRUSH_RADIUS; y++) {
+            for (int x = -BRUSH_RADIUS; x <= BRUSH_RADIUS; x++) {
+                float weight = 1 - (float) Math.sqrt(x * x + y * y) / BRUSH_RADIUS;
+                if (weight > 0) {
+                    cells.add(new int[]{x, y});
+                    weights.add(weight);
+                    sum += weight;
+                }
+            }
+        }
+        BRUSH_X = new int[cells.size()];
+        BRUSH_Y = new int[cells.size()];
+        BRUSH_WEIGHTS = new float[cells.size()];
+        for (int i = 0; i < cells.size(); i++) {
+            BRUSH_X[i] = cells.get(i)[0];
+            BRUSH_Y[i] = cells.get(i)[1];
+            BRUSH_WEIGHTS[i] = weights.get(i) / sum;
+        }
+    }
+
+    private Erosion() {
+    }
+
+    // Hydraulic, then thermal erosion. A null executor runs everything on the calling thread. Maps less than two
+    // cells wide or high have no cell for a droplet to flow through and only get thermal erosion.
+    public static void erode(HeightMap map, ErosionSettings settings, ExecutorService executor) {
+        Console.log("Eroding: " + settings);
+        if (settings.droplets > 0) {
+            if (map.getWidth() < 2 || map.getHeight() < 2) {
+                Console.log("    Skipping hydraulic erosion of a " + map.getWidth() + "x" + map.getHeight() + " map");
+            } else {
+                hydraulic(map, settings.seed, settings.droplets, executor);
+            }
+        }
+        if (settings.thermalIterations > 0) {
+            thermal(map, settings.talus, settings.thermalIterations, executor);
+        }
+        Console.log("    Done");
+    }
+
+    // Droplets read the four corners of their cell, the map has to be at least 2x2.
+    public static void hydraulic(HeightMap map, int seed, int droplets, ExecutorService executor) {
+        if (map.getWidth() < 2 || map.getHeight() < 2) {
+            throw new IllegalArgumentException("Hydraulic erosion needs at least 2x2 cells but the map is "
+                    + map.getWidth() + "x" + map.getHeight());
+        }
+        Metrics.Timer timer = HYDRAULIC.start();
+
+        int width = map.getWidth();
+        int height = map.getHeight();
+        int tilesX = (width + TILE_SIZE - 1) / TILE_SIZE;
+        int tilesY = (height + TILE_SIZE - 1) / TILE_SIZE;
+
+        int roundSize = Math.min(droplets, ROUND_DROPLETS);
+        float[] startX = new float[roundSize];
+        float[] startY = new float[roundSize];
+        int[] tileOf = new int[roundSize];
+        float[] sortedX = new float[roundSize];
+        float[] sortedY = new float[roundSize];
+        int[] tileStart = new int[tilesX * tilesY + 1];
+
+        // The brush cells as offsets into the heights of the map.
+        int[] brushOffsets = new int[BRUSH_WEIGHTS.length];
+        for (int i = 0; i < brushOffsets.length; i++) {
+            brushOffsets[i] = BRUSH_Y[i] * map.getStride() + BRUSH_X[i];
+        }
+
+        Random prng = new Random(seed);
+        for (int done = 0; done < droplets; done += roundSize) {
+            int count = Math.min(roundSize, droplets - done);
+
+            // Draws the start positions and sorts them by tile, keeping the order within each tile.
+            Arrays.fill(tileStart, 0);
+            for (int i = 0; i < count; i++) {
+                startX[i] = prng.nextFloat() * (width - 1);
+                startY[i] = prng.nextFloat() * (height - 1);
+                tileOf[i] = (int) startY[i] / TILE_SIZE * tilesX + (int) startX[i] / TILE_SIZE;
+                tileStart[tileOf[i] + 1]++;
+            }
+            for (int t = 0; t < tilesX * tilesY; t++) {
+                tileStart[t + 1] += tileStart[t];
+            }
+            int[] next = tileStart.clone();
+            for (int i = 0; i < count; i++) {
+                int slot = next[tileOf[i]]++;
+                sortedX[slot] = startX[i];
+                sortedY[slot] = startY[i];
+            }
+
+            // Every task simulates one row of the tiles of the phase, those never touch the same cells.
+            for (int phase = 0; phase < 4; phase++) {
+                List<Callable<Void>> tasks = new ArrayList<>();
+                for (int tileY = phase >> 1; tileY < tilesY; tileY += 2) {
+                    int row = tileY;
+                    int firstTileX = phase & 1;
+                    tasks.add(() -> {
+                        Vec2f position = new Vec2f();
+                        Vec2f direction = new Vec2f();
+                        for (int tileX = firstTileX; tileX < tilesX; tileX += 2) {
+                            int tile = row * tilesX + tileX;
+                            for (int i = tileStart[tile]; i < tileStart[tile + 1]; i++) {
+                                simulate(map, brushOffsets, position.set(sortedX[i], sortedY[i]), direction.set(0, 0));
+                            }
+                        }
+                        return null;
+                    });
+                }
+                TerrainNoise.runAll(tasks, executor);
+            }
+        }
+
+        timer.stop(droplets);
+    }
+
+    // Moves one droplet downhill until it evaporates, stops on flat ground or leaves the map.
+    private static void simulate(HeightMap map, int[] brushOffsets, Vec2f position, Vec2f direction) {
+        float[] heights = map.data();
+        int width = map.getWidth();
+        int height = map.getHeight();
+        int stride = map.getStride();
+
+        float speed = INITIAL_SPEED;
+        float water = INITIAL_WATER;
+        float sediment = 0;
+
+        for (int step = 0; step < MAX_LIFETIME; step++) {
+            int nodeX = (int) position.x;
+            int nodeY = (int) position.y;
+            float cellX = position.x - nodeX;
+            float cellY = position.y - nodeY;
+            int node = map.index(nodeX, nodeY);
+
+            float nw = heights[node];
+            float ne = heights[node + 1];
+            float sw = heights[node + stride];
+            float se = heights[node + stride + 1];
+            float gradientX = (ne - nw) * (1 - cellY) + (se - sw) * cellY;
+            float gradientY = (sw - nw) * (1 - cellX) + (se - ne) * cellX;
+            float oldHeight = nw * (1 - cellX) * (1 - cellY) + ne * cellX * (1 - cellY) + sw * (1 - cellX) * cellY + se * cellX * cellY;
+
+            direction.set(direction.x * INERTIA - gradientX * (1 - INERTIA), direction.y * INERTIA - gradientY * (1 - INERTIA));
+            if (direction.magnitudeSquared() == 0) {
+                break;
+            }
+            direction.unitize(direction);
+            position.add(direction, position);
+            if (position.x < 0 || position.x >= width - 1 || position.y < 0 || position.y >= height - 1) {
+                break;
+            }
+
+            float deltaHeight = interpolate(map, position) - oldHeight;
+            float capacity = Math.max(-deltaHeight * speed * water * SEDIMENT_CAPACITY, MIN_SEDIMENT_CAPACITY);
+
+            if (sediment > capacity || deltaHeight > 0) {
+                // Uphill the droplet fills the pit behind it, otherwise it drops what it cannot carry.
+                float amount = deltaHeight > 0 ? Math.min(deltaHeight, sediment) : (sediment - capacity) * DEPOSIT_SPEED;
+                sediment -= amount;
+                heights[node] += amount * (1 - cellX) * (1 - cellY);
+                heights[node + 1] += amount * cellX * (1 - cellY);
+                heights[node + stride] += amount * (1 - cellX) * cellY;
+                heights[node + stride + 1] += amount * cellX * cellY;
+            } else {
+                // Never takes more than the height difference, so the droplet does not dig a hole behind itself.
+                float amount = Math.min((capacity - sediment) * ERODE_SPEED, -deltaHeight);
+                boolean inside = nodeX >= BRUSH_RADIUS && nodeX < width - BRUSH_RADIUS && nodeY >= BRUSH_RADIUS && nodeY < height - BRUSH_RADIUS;
+                for (int i = 0; i < BRUSH_WEIGHTS.length; i++) {
+                    if (!inside) {
+                        int x = nodeX + BRUSH_X[i];
+                        int y = nodeY + BRUSH_Y[i];
+                        if (x < 0 || x >= width || y < 0 || y >= height) {
+                            continue;
+                        }
+                    }
+                    int index = node + brushOffsets[i];
+                    float eroded = Math.min(heights[index], amount * BRUSH_WEIGHTS[i]);
+                    heights[index] -= eroded;
+                    sediment += eroded;
+                }
+            }
+
+            speed = (float) Math.sqrt(Math.max(0, speed * speed - deltaHeight * GRAVITY));
+            water *= 1 - EVAPORATE_SPEED;
+        }
+    }
+
+    // The bilinear height at a position inside the map.
+    private static float interpolate(HeightMap map, Vec2f position) {
+        float[] heights = map.data();
+        int stride = map.getStride();
+        int nodeX = (int) position.x;
+        int nodeY = (int) position.y;
+        float cellX = position.x - nodeX;
+        float cellY = position.y - nodeY;
+        int node = map.index(nodeX, nodeY);
+        return heights[node] * (1 - cellX) * (1 - cellY) + heights[node + 1] * cellX * (1 - cellY)
+                + heights[node + stride] * (1 - cellX) * cellY + heights[node + stride + 1] * cellX * cellY;
+    }
+
+    public static void thermal(HeightMap map, float talus, int iterations, ExecutorService executor) {
+        Metrics.Timer timer = THERMAL.start();
+
+        int width = map.getWidth();
+        int height = map.getHeight();
+        float[] source = new float[width * height];
+        float[] target = new float[width * height];
+        for (int y = 0; y < height; y++) {
+            map.getRow(y, source, y * width);
+        }
+
+        int bands = executor == null ? 1 : Math.min(height, Runtime.getRuntime().availableProcessors() * 4);
+        int bandHeight = (height + bands - 1) / bands;
+
+        for (int iteration = 0; iteration < iterations; iteration++) {
+            float[] from = source;
+            float[] to = target;
+            List<Callable<Void>> tasks = new ArrayList<>();
+            for (int startY = 0; startY < height; startY += bandHeight) {
+                int fromY = startY;
+                int toY = Math.min(startY + bandHeight, height);
+                tasks.add(() -> {
+                    for (int y = fromY; y < toY; y++) {
+                        settleRow(from, to, y, width, height, talus);
+                    }
+                    return null;
+                });
+            }
+            TerrainNoise.runAll(tasks, executor);
+
+            source = to;
+            target = from;
+        }
+
+        for (int y = 0; y < height; y++) {
+            map.setRow(y, source, y * width);
+        }
+        timer.stop((long) width * height * iterations);
+    }
+
+    // Every cell takes what its higher neighbours shed onto it and gives what it sheds onto its lower ones. Both
+    // cells of a pair compute the same amount from the same difference, so no material is lost or created.
+    private static void settleRow(float[] from, float[] to, int y, int width, int height, float talus) {
+        int row = y * width;
+        boolean up = y > 0;
+        boolean down = y < height - 1;
+        if (!up || !down || width < 3) {
+            settleCells(from, to, y, 0, width, width, height, talus);
+            return;
+        }
+
+        // Inner cells have all four neighbours, without a branch per neighbour the loop vectorizes.
+        settleCells(from, to, y, 0, 1, width, height, talus);
+        for (int i = row + 1; i < row + width - 1; i++) {
+            float center = from[i];
+            to[i] = center + shed(from[i - 1] - center, talus) + shed(from[i + 1] - center, talus)
+                    + shed(from[i - width] - center, talus) + shed(from[i + width] - center, talus);
+        }
+        settleCells(from, to, y, width - 1, width, width, height, talus);
+    }
+
+    // Settles cells [fromX, toX) of row y, checking which neighbours exist.
+    private static void settleCells(float[] from, float[] to, int y, int fromX, int toX, int width, int height, float talus) {
+        int row = y * width;
+        boolean up = y > 0;
+        boolean down = y < height - 1;
+        for (int x = fromX; x < toX; x++) {
+            int i = row + x;
+            float center = from[i];
+            float change = 0;
+            if (x > 0) {
+                change += shed(from[i - 1] - center, talus);
+            }
+            if (x < width - 1) {
+                change += shed(from[i + 1] - center, talus);
+            }
+            if (up) {
+                change += shed(from[i - width] - center, talus);
+            }
+            if (down) {
+                change += shed(from[i + width] - center, talus);
+            }
+            to[i] = center + change;
+        }
+    }
+
+    // What moves onto a cell from a neighbour that much higher, negative if the neighbour is lower. A fraction of the
+    // part of the difference outside of [-talus, talus].
+    private static float shed(float difference, float talus) {
+        // max(d - t, 0) - max(-d - t, 0) written with abs, Math.max of floats is not vectorized and branches on the
+        // slope are not predictable. Negating the difference negates every step, so both cells get the same amount.
+        return THERMAL_RATE * 0.5f * ((difference + difference) + (Math.abs(difference - talus) - Math.abs(difference + talus)));
+    }
+}
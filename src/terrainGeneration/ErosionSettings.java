@@ -0,0 +1,37 @@
+package terrainGeneration;
+
+/**
+ * The parameters of {@link Erosion}. Immutable and therefore thread-safe.
+ */
+public final class ErosionSettings {
+
+    // Height difference between neighbouring cells a slope keeps, a map normalized to [0, 1] is about 1/1000 per cell.
+    public static final float DEFAULT_TALUS = 0.001f;
+
+    // Seeds the start positions of the droplets.
+    public final int seed;
+    // Droplets of hydraulic erosion, about one per cell gives visible channels.
+    public final int droplets;
+    // Passes of thermal erosion over the whole map.
+    public final int thermalIterations;
+    public final float talus;
+
+    public ErosionSettings(int seed, int droplets, int thermalIterations) {
+        this(seed, droplets, thermalIterations, DEFAULT_TALUS);
+    }
+
+    public ErosionSettings(int seed, int droplets, int thermalIterations, float talus) {
+        if (droplets < 0 || thermalIterations < 0) {
+            throw new IllegalArgumentException("Expected non-negative droplets and iterations but got " + droplets + " and " + thermalIterations);
+        }
+        this.seed = seed;
+        this.droplets = droplets;
+        this.thermalIterations = thermalIterations;
+        this.talus = talus;
+    }
+
+    @Override
+    public String toString() {
+        return "Seed: " + seed + " Droplets: " + droplets + " Thermal iterations: " + thermalIterations + " Talus: " + talus;
+    }
+}
@@ -0,0 +1,347 @@
+package terrainGeneration;
+
+import utils.MathUtils;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Sums octaves of any {@link NoiseSource}, each octave at a higher frequency
+ * and a lower amplitude than the one before. How the octaves are combined
+ * depends on the {@link Mode}. The octave parameters, including the random
+ * per octave offsets drawn from the seed, are resolved once on construction.
+ * <p>
+ * The coordinates are in pattern space, a map divides its pixel coordinates
+ * by {@link NoiseSettings#scale} before sampling. The scale itself and the
+ * precise flag of the settings are up to the caller.
+ */
+public final class FractalNoise implements NoiseSource {
+
+    public enum Mode {
+        // Fractal Brownian motion, the plain sum of the octaves.
+        FBM,
+        // Ridged multifractal, sharp ridges where the noise crosses zero. Each octave is weighted by the one before,
+        // so valleys stay smooth.
+        RIDGED,
+        // Sum of the folded octaves, 2|n| - 1, rounded hills.
+        BILLOW,
+        // Sum of the absolute octaves, |n|.
+        TURBULENCE
+    }
+
+    // Weight of the previous octave in the ridged mode.
+    private static final float RIDGE_GAIN = 2;
+
+    private final NoiseSource source;
+    private final Mode mode;
+    private final int octaves;
+
+    private final float[] amplitudes;
+    private final float[] frequencies;
+    private final float[] offsetsX;
+    private final float[] offsetsY;
+
+    private final double[] preciseFrequencies;
+    private final double[] preciseOffsetsX;
+    private final double[] preciseOffsetsY;
+
+    private final float amplitudeSum;
+
+    private final ScratchBuffers scratch = new ScratchBuffers(4);
+
+    // fBm of OpenSimplex noise, what TerrainNoise generates by default, the noise of the seed comes from the shared cache.
+    public FractalNoise(NoiseSettings settings) {
+        this(NoiseCache.shared().get(settings.seed), Mode.FBM, settings);
+    }
+
+    // Uses seed, octaves, persistance, lacunarity and offset of the settings.
+    public FractalNoise(NoiseSource source, Mode mode, NoiseSettings settings) {
+        this.source = source;
+        this.mode = mode;
+        this.octaves = settings.octaves;
+
+        amplitudes = new float[octaves];
+        frequencies = new float[octaves];
+        offsetsX = new float[octaves];
+        offsetsY = new float[octaves];
+        preciseFrequencies = new double[octaves];
+        preciseOffsetsX = new double[octaves];
+        preciseOffsetsY = new double[octaves];
+
+        Random prng = new Random(settings.seed);
+
+        float amplitude = 1;
+        float frequency = 1;
+        double preciseFrequency = 1;
+        float sum = 0;
+        for (int i = 0; i < octaves; i++) {
+            int randomX = prng.nextInt(200001) - 100000;
+            int randomY = prng.nextInt(200001) - 100000;
+
+            amplitudes[i] = amplitude;
+            frequencies[i] = frequency;
+            offsetsX[i] = randomX + settings.offsetX;
+            offsetsY[i] = randomY + settings.offsetY;
+            preciseFrequencies[i] = preciseFrequency;
+            preciseOffsetsX[i] = (double) randomX + settings.offsetX;
+            preciseOffsetsY[i] = (double) randomY + settings.offsetY;
+
+            sum += Math.abs(amplitude);
+            amplitude *= settings.persistance;
+            frequency *= settings.lacunarity;
+            preciseFrequency *= settings.lacunarity;
+        }
+        amplitudeSum = sum;
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public int getOctaves() {
+        return octaves;
+    }
+
+    @Override
+    public float eval(float x, float y) {
+        float value = 0;
+        float weight = 1;
+        for (int i = 0; i < octaves; i++) {
+            float sample = source.eval(x * frequencies[i] + offsetsX[i], y * frequencies[i] + offsetsY[i]);
+            float term = term(sample, weight);
+            if (mode == Mode.RIDGED) {
+                weight = MathUtils.clamp(term * RIDGE_GAIN, 0, 1);
+            }
+            value += term * amplitudes[i];
+        }
+        return value;
+    }
+
+    @Override
+    public double eval(double x, double y) {
+        double value = 0;
+        float weight = 1;
+        for (int i = 0; i < octaves; i++) {
+            double sample = source.eval(x * preciseFrequencies[i] + preciseOffsetsX[i], y * preciseFrequencies[i] + preciseOffsetsY[i]);
+            float term = term((float) sample, weight);
+            if (mode == Mode.RIDGED) {
+                weight = MathUtils.clamp(term * RIDGE_GAIN, 0, 1);
+            }
+            value += term * amplitudes[i];
+        }
+        return value;
+    }
+
+    @Override
+    public void evalRow(float[] xs, int xsOffset, float y, int count, float[] out, int offset) {
+        float[] samples = scratch.floats(1, count);
+        float[] weights = begin(out, offset, count);
+
+        for (int i = 0; i < octaves; i++) {
+            evalOctaveRow(i, xs, xsOffset, y, count, samples, 0);
+            accumulate(i, samples, 0, out, offset, count, weights);
+        }
+    }
+
+    @Override
+    public void evalRow(double[] xs, int xsOffset, double y, int count, float[] out, int offset) {
+        float[] samples = scratch.floats(1, count);
+        float[] weights = begin(out, offset, count);
+
+        for (int i = 0; i < octaves; i++) {
+            evalOctaveRow(i, xs, xsOffset, y, count, samples, 0);
+            accumulate(i, samples, 0, out, offset, count, weights);
+        }
+    }
+
+    // The samples of a single octave along a row, before the mode and the amplitude are applied. They depend on the
+    // seed, lacunarity and offset of the settings, but not on the octave count, the persistance or the mode.
+    void evalOctaveRow(int octave, float[] xs, int xsOffset, float y, int count, float[] out, int offset) {
+        float[] octaveXs = scratch.floats(0, count);
+        float frequency = frequencies[octave];
+        float offsetX = offsetsX[octave];
+        for (int x = 0; x < count; x++) {
+            octaveXs[x] = xs[xsOffset + x] * frequency + offsetX;
+        }
+
+        source.evalRow(octaveXs, 0, y * frequency + offsetsY[octave], count, out, offset);
+    }
+
+    void evalOctaveRow(int octave, double[] xs, int xsOffset, double y, int count, float[] out, int offset) {
+        double[] octaveXs = scratch.doubles(0, count);
+        double frequency = preciseFrequencies[octave];
+        double offsetX = preciseOffsetsX[octave];
+        for (int x = 0; x < count; x++) {
+            octaveXs[x] = xs[xsOffset + x] * frequency + offsetX;
+        }
+
+        source.evalRow(octaveXs, 0, y * frequency + preciseOffsetsY[octave], count, out, offset);
+    }
+
+    // Combines rows of octave samples from evalOctaveRow like evalRow does, layers[i] holds octave i from
+    // layerOffset on. The same float operations in the same order, so the sum is bit-identical to evalRow.
+    void sumOctaves(float[][] layers, int layerOffset, int count, float[] out, int offset) {
+        float[] weights = begin(out, offset, count);
+        for (int i = 0; i < octaves; i++) {
+            accumulate(i, layers[i], layerOffset, out, offset, count, weights);
+        }
+    }
+
+    @Override
+    public void evalPoints(float[] xs, float[] ys, int xyOffset, int count, float[] out, int offset) {
+        float[] octaveXs = scratch.floats(0, count);
+        float[] octaveYs = scratch.floats(1, count);
+        float[] samples = scratch.floats(3, count);
+        float[] weights = begin(out, offset, count);
+
+        for (int i = 0; i < octaves; i++) {
+            float frequency = frequencies[i];
+            float offsetX = offsetsX[i];
+            float offsetY = offsetsY[i];
+            for (int p = 0; p < count; p++) {
+                octaveXs[p] = xs[xyOffset + p] * frequency + offsetX;
+                octaveYs[p] = ys[xyOffset + p] * frequency + offsetY;
+            }
+
+            source.evalPoints(octaveXs, octaveYs, 0, count, samples, 0);
+            accumulate(i, samples, 0, out, offset, count, weights);
+        }
+    }
+
+    @Override
+    public void evalPoints(double[] xs, double[] ys, int xyOffset, int count, float[] out, int offset) {
+        double[] octaveXs = scratch.doubles(0, count);
+        double[] octaveYs = scratch.doubles(1, count);
+        float[] samples = scratch.floats(1, count);
+        float[] weights = begin(out, offset, count);
+
+        for (int i = 0; i < octaves; i++) {
+            double frequency = preciseFrequencies[i];
+            double offsetX = preciseOffsetsX[i];
+            double offsetY = preciseOffsetsY[i];
+            for (int p = 0; p < count; p++) {
+                octaveXs[p] = xs[xyOffset + p] * frequency + offsetX;
+                octaveYs[p] = ys[xyOffset + p] * frequency + offsetY;
+            }
+
+            source.evalPoints(octaveXs, octaveYs, 0, count, samples, 0);
+            accumulate(i, samples, 0, out, offset, count, weights);
+        }
+    }
+
+    // The slice at depth z of the fractal of 3D noise along a row, out[offset + i] = fractal(xs[xsOffset + i], y, z).
+    // The octaves are moved by the offsets of the 2D table in x and y, z is only scaled by their frequency.
+    void evalRow3D(float[] xs, int xsOffset, float y, float z, int count, float[] out, int offset) {
+        OpenSimplexNoise noise = simplexSource();
+        float[] octaveXs = scratch.floats(0, count);
+        float[] samples = scratch.floats(1, count);
+        float[] weights = begin(out, offset, count);
+
+        for (int i = 0; i < octaves; i++) {
+            float frequency = frequencies[i];
+            float offsetX = offsetsX[i];
+            for (int x = 0; x < count; x++) {
+                octaveXs[x] = xs[xsOffset + x] * frequency + offsetX;
+            }
+
+            noise.evalRow(octaveXs, 0, y * frequency + offsetsY[i], z * frequency, count, samples, 0);
+            accumulate(i, samples, 0, out, offset, count, weights);
+        }
+    }
+
+    // The fractal of 4D noise at points whose first two coordinates vary, out[offset + i] = fractal(xs[xyOffset + i],
+    // ys[xyOffset + i], z, w). The octaves are moved by the offsets of the 2D table, (offsetX, offsetY) in the x, y
+    // plane and swapped in the z, w plane, so neither plane is moved along its diagonal.
+    void evalRow4D(float[] xs, float[] ys, int xyOffset, float z, float w, int count, float[] out, int offset) {
+        OpenSimplexNoise noise = simplexSource();
+        float[] octaveXs = scratch.floats(0, count);
+        float[] octaveYs = scratch.floats(1, count);
+        float[] samples = scratch.floats(3, count);
+        float[] weights = begin(out, offset, count);
+
+        for (int i = 0; i < octaves; i++) {
+            float frequency = frequencies[i];
+            float offsetX = offsetsX[i];
+            float offsetY = offsetsY[i];
+            for (int p = 0; p < count; p++) {
+                octaveXs[p] = xs[xyOffset + p] * frequency + offsetX;
+                octaveYs[p] = ys[xyOffset + p] * frequency + offsetY;
+            }
+
+            noise.evalRow(octaveXs, octaveYs, 0, z * frequency + offsetY, w * frequency + offsetX, count, samples, 0);
+            accumulate(i, samples, 0, out, offset, count, weights);
+        }
+    }
+
+    // The source as 3D and 4D noise, only OpenSimplexNoise has more than two dimensions.
+    private OpenSimplexNoise simplexSource() {
+        if (!(source instanceof OpenSimplexNoise)) {
+            throw new IllegalStateException("3D and 4D octaves need an OpenSimplexNoise source but got " + source.getClass().getSimpleName());
+        }
+        return (OpenSimplexNoise) source;
+    }
+
+    // fBm and billow reach the sum of the amplitudes in both directions, ridged and turbulence are never negative.
+    @Override
+    public NoiseRange range() {
+        if (mode == Mode.FBM || mode == Mode.BILLOW) {
+            return new NoiseRange(-amplitudeSum, amplitudeSum);
+        }
+        return new NoiseRange(0, amplitudeSum);
+    }
+
+    // Clears the output and returns the octave weights of the ridged mode, null for the other modes.
+    private float[] begin(float[] out, int offset, int count) {
+        Arrays.fill(out, offset, offset + count, 0);
+        if (mode != Mode.RIDGED) {
+            return null;
+        }
+        float[] weights = scratch.floats(2, count);
+        Arrays.fill(weights, 0, count, 1);
+        return weights;
+    }
+
+    // Adds the samples of octave i, the mode is switched on once per octave rather than per sample.
+    private void accumulate(int i, float[] samples, int samplesOffset, float[] out, int offset, int count, float[] weights) {
+        float amplitude = amplitudes[i];
+        switch (mode) {
+            case FBM:
+                for (int x = 0; x < count; x++) {
+                    out[offset + x] += samples[samplesOffset + x] * amplitude;
+                }
+                break;
+            case RIDGED:
+                for (int x = 0; x < count; x++) {
+                    float term = term(samples[samplesOffset + x], weights[x]);
+                    weights[x] = MathUtils.clamp(term * RIDGE_GAIN, 0, 1);
+                    out[offset + x] += term * amplitude;
+                }
+                break;
+            case BILLOW:
+                for (int x = 0; x < count; x++) {
+                    out[offset + x] += (2 * Math.abs(samples[samplesOffset + x]) - 1) * amplitude;
+                }
+                break;
+            case TURBULENCE:
+                for (int x = 0; x < count; x++) {
+                    out[offset + x] += Math.abs(samples[samplesOffset + x]) * amplitude;
+                }
+                break;
+        }
+    }
+
+    // The contribution of one sample before the amplitude, weight is only used by the ridged mode.
+    private float term(float sample, float weight) {
+        switch (mode) {
+            case RIDGED:
+                float signal = 1 - Math.abs(sample);
+                return signal * signal * weight;
+            case BILLOW:
+                return 2 * Math.abs(sample) - 1;
+            case TURBULENCE:
+                return Math.abs(sample);
+            default:
+                return sample;
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package terrainGeneration;
+
+/**
+ * A snapshot of the progress of a {@link MapJob}: the rows and samples done
+ * so far, the time since the job started and whether it is done, which
+ * includes cancelled and failed jobs.
+ */
+public final class GenerationProgress {
+
+    public final int rowsDone;
+    public final int totalRows;
+    public final long samplesDone;
+    public final long totalSamples;
+    public final long elapsedNanos;
+    public final boolean done;
+
+    public GenerationProgress(int rowsDone, int totalRows, long samplesDone, long totalSamples, long elapsedNanos, boolean done) {
+        this.rowsDone = rowsDone;
+        this.totalRows = totalRows;
+        this.samplesDone = samplesDone;
+        this.totalSamples = totalSamples;
+        this.elapsedNanos = elapsedNanos;
+        this.done = done;
+    }
+
+    public int percent() {
+        return totalSamples == 0 ? 100 : (int) (samplesDone * 100 / totalSamples);
+    }
+
+    public double samplesPerSecond() {
+        return elapsedNanos == 0 ? 0 : samplesDone * 1e9 / elapsedNanos;
+    }
+
+    // Estimated time until the job is done at the rate so far, -1 before the first sample.
+    public long etaMillis() {
+        if (samplesDone == 0) {
+            return -1;
+        }
+        return (long) ((totalSamples - samplesDone) / samplesPerSecond() * 1000);
+    }
+
+    @Override
+    public String toString() {
+        return percent() + "% rows " + rowsDone + "/" + totalRows + " " + Math.round(samplesPerSecond()) + " samples/s ETA " + etaMillis() + " ms";
+    }
+}
@@ -0,0 +1,132 @@
+package terrainGeneration;
+
+import utils.MathUtils;
+
+import java.util.Arrays;
+
+/**
+ * A grid of heights stored in one contiguous float array in row-major order.
+ * The value at (x, y) lives at {@code offset + y * stride + x}, so walking a
+ * row walks memory sequentially.
+ */
+public final class HeightMap {
+
+    private final float[] data;
+    private final int offset;
+    private final int width;
+    private final int height;
+    private final int stride;
+
+    public HeightMap(int width, int height) {
+        this(new float[Math.multiplyExact(width, height)], 0, width, height, width);
+    }
+
+    /**
+     * Wrap an existing array without copying it.
+     *
+     * @param data   the backing array
+     * @param offset index of (0, 0) in the backing array
+     * @param width  the number of columns
+     * @param height the number of rows
+     * @param stride the distance between the starts of two rows
+     */
+    public HeightMap(float[] data, int offset, int width, int height, int stride) {
+        if (width < 0 || height < 0 || stride < width) {
+            throw new IllegalArgumentException("Invalid dimensions " + width + "x" + height + " stride " + stride);
+        }
+        if (height > 0 && offset + (long) (height - 1) * stride + width > data.length) {
+            throw new IllegalArgumentException("Backing array too small for " + width + "x" + height + " stride " + stride);
+        }
+        this.data = data;
+        this.offset = offset;
+        this.width = width;
+        this.height = height;
+        this.stride = stride;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getStride() {
+        return stride;
+    }
+
+    public int getOffset() {
+        return offset;
+    }
+
+    /**
+     * The backing array, for bulk access. Use {@link #index(int, int)} to
+     * find a sample in it.
+     */
+    public float[] data() {
+        return data;
+    }
+
+    public int index(int x, int y) {
+        return offset + y * stride + x;
+    }
+
+    public float get(int x, int y) {
+        return data[offset + y * stride + x];
+    }
+
+    public void set(int x, int y, float value) {
+        data[offset + y * stride + x] = value;
+    }
+
+    public void getRow(int y, float[] dst, int dstOffset) {
+        System.arraycopy(data, offset + y * stride, dst, dstOffset, width);
+    }
+
+    public void setRow(int y, float[] src, int srcOffset) {
+        System.arraycopy(src, srcOffset, data, offset + y * stride, width);
+    }
+
+    public void fill(float value) {
+        for (int y = 0; y < height; y++) {
+            int start = offset + y * stride;
+            Arrays.fill(data, start, start + width, value);
+        }
+    }
+
+    /**
+     * A view of a rectangle of this map sharing the same backing array.
+     */
+    public HeightMap region(int x, int y, int regionWidth, int regionHeight) {
+        if (x < 0 || y < 0 || x + regionWidth > width || y + regionHeight > height) {
+            throw new IndexOutOfBoundsException("Region " + x + "," + y + " " + regionWidth + "x" + regionHeight + " outside of " + width + "x" + height);
+        }
+        return new HeightMap(data, index(x, y), regionWidth, regionHeight, stride);
+    }
+
+    public NoiseRange range() {
+        NoiseRange range = new NoiseRange();
+        for (int y = 0; y < height; y++) {
+            int start = offset + y * stride;
+            for (int i = start; i < start + width; i++) {
+                range.include(data[i]);
+            }
+        }
+        return range;
+    }
+
+    // Maps the rows [fromY, toY) from [min, max] onto [0, 1].
+    public void normalize(float min, float max, int fromY, int toY) {
+        for (int y = fromY; y < toY; y++) {
+            int start = offset + y * stride;
+            for (int i = start; i < start + width; i++) {
+                data[i] = MathUtils.inverseLerp(min, max, data[i]);
+            }
+        }
+    }
+
+    public void normalize(float min, float max) {
+        normalize(min, max, 0, height);
+    }
+}
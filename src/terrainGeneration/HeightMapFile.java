@@ -0,0 +1,378 @@
+package terrainGeneration;
+
+import utils.MathUtils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A height map stored in a memory-mapped file, so maps larger than the heap
+ * can be generated and read back a region at a time.
+ * <p>
+ * The file starts with a {@value #HEADER_SIZE} byte little-endian header
+ * holding the dimensions, the sample format and how the map was generated:
+ * the noise settings, the fractal mode, the warp strength and whether it was
+ * eroded afterwards. The erosion parameters do not fit into the header.
+ * Files of version 1 only hold the settings and are read as unwarped,
+ * uneroded fBm. The samples follow in square tiles of tileSize x
+ * tileSize, tiles in row-major order and samples row-major within a tile.
+ * Tiles on the right and bottom edge are padded to the full tile size.
+ */
+public class HeightMapFile implements Closeable {
+
+    public enum Format {
+        FLOAT32(4),
+        // Heights in [0, 1] quantized to 0..65535.
+        UINT16(2);
+
+        public final int bytes;
+
+        Format(int bytes) {
+            this.bytes = bytes;
+        }
+    }
+
+    public static final int HEADER_SIZE = 64;
+
+    private static final int MAGIC = 0x504D4148; // "HMAP"
+    private static final int VERSION = 2;
+
+    private final FileChannel channel;
+    private final boolean writable;
+
+    private final int width;
+    private final int height;
+    private final int tileSize;
+    private final Format format;
+    private final NoiseSettings settings;
+    private final FractalNoise.Mode mode;
+    private final float warp;
+    private final boolean eroded;
+
+    private final int tilesX;
+    private final int tilesY;
+    private final long tileRowBytes;
+
+    // One mapping per row of tiles, mapped on first use.
+    private final MappedByteBuffer[] tileRows;
+    private final FloatBuffer[] floatRows;
+    private final ShortBuffer[] shortRows;
+
+    private HeightMapFile(FileChannel channel, boolean writable, int width, int height, int tileSize, Format format, NoiseSettings settings,
+                          FractalNoise.Mode mode, float warp, boolean eroded) {
+        this.channel = channel;
+        this.writable = writable;
+        this.width = width;
+        this.height = height;
+        this.tileSize = tileSize;
+        this.format = format;
+        this.settings = settings;
+        this.mode = mode;
+        this.warp = warp;
+        this.eroded = eroded;
+
+        tilesX = (width + tileSize - 1) / tileSize;
+        tilesY = (height + tileSize - 1) / tileSize;
+        tileRowBytes = (long) tilesX * tileSize * tileSize * format.bytes;
+        if (tileRowBytes > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("A row of tiles does not fit into one mapping, use a smaller tile size");
+        }
+
+        tileRows = new MappedByteBuffer[tilesY];
+        floatRows = new FloatBuffer[tilesY];
+        shortRows = new ShortBuffer[tilesY];
+    }
+
+    // Creates (or replaces) a file for a width x height fBm map and maps it for writing.
+    public static HeightMapFile create(Path path, int width, int height, int tileSize, Format format, NoiseSettings settings) throws IOException {
+        return create(path, width, height, tileSize, format, settings, FractalNoise.Mode.FBM, 0, false);
+    }
+
+    // Creates (or replaces) a file for a width x height map of the given fractal mode and warp strength, eroded when
+    // erosion ran after generating it, and maps it for writing.
+    public static HeightMapFile create(Path path, int width, int height, int tileSize, Format format, NoiseSettings settings,
+                                       FractalNoise.Mode mode, float warp, boolean eroded) throws IOException {
+        if (width <= 0 || height <= 0 || tileSize <= 0) {
+            throw new IllegalArgumentException("Invalid dimensions " + width + "x" + height + " tile size " + tileSize);
+        }
+
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        try {
+            HeightMapFile file = new HeightMapFile(channel, true, width, height, tileSize, format, settings, mode, warp, eroded);
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC);
+            header.putInt(VERSION);
+            header.putInt(format.ordinal());
+            header.putInt(width);
+            header.putInt(height);
+            header.putInt(tileSize);
+            header.putInt(settings.seed);
+            header.putInt(settings.octaves);
+            header.putFloat(settings.persistance);
+            header.putFloat(settings.lacunarity);
+            header.putFloat(settings.scale);
+            header.putFloat(settings.offsetX);
+            header.putFloat(settings.offsetY);
+            header.putInt(settings.precise ? 1 : 0);
+            header.put((byte) mode.ordinal());
+            header.put((byte) (eroded ? 1 : 0));
+            header.putShort((short) 0);
+            header.putFloat(warp);
+            header.rewind();
+            while (header.hasRemaining()) {
+                channel.write(header, header.position());
+            }
+
+            // Extends the file to its full size, the samples read as zero until written.
+            channel.write(ByteBuffer.allocate(1), HEADER_SIZE + file.tileRowBytes * file.tilesY - 1);
+            return file;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    // Opens an existing file read-only, validating its header against its size.
+    public static HeightMapFile open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            while (header.hasRemaining()) {
+                if (channel.read(header, header.position()) < 0) {
+                    throw new IOException(path + " is too short to be a height map file");
+                }
+            }
+            header.flip();
+
+            if (header.getInt() != MAGIC) {
+                throw new IOException(path + " is not a height map file");
+            }
+            int version = header.getInt();
+            if (version != 1 && version != VERSION) {
+                throw new IOException(path + " has unsupported version " + version);
+            }
+            int formatIndex = header.getInt();
+            if (formatIndex < 0 || formatIndex >= Format.values().length) {
+                throw new IOException(path + " has unknown sample format " + formatIndex);
+            }
+            Format format = Format.values()[formatIndex];
+            int width = header.getInt();
+            int height = header.getInt();
+            int tileSize = header.getInt();
+            if (width <= 0 || height <= 0 || tileSize <= 0) {
+                throw new IOException(path + " has invalid dimensions " + width + "x" + height + " tile size " + tileSize);
+            }
+            int seed = header.getInt();
+            int octaves = header.getInt();
+            float persistance = header.getFloat();
+            float lacunarity = header.getFloat();
+            float scale = header.getFloat();
+            float offsetX = header.getFloat();
+            float offsetY = header.getFloat();
+            // Zero in files written before the flag existed.
+            boolean precise = header.getInt() != 0;
+
+            FractalNoise.Mode mode = FractalNoise.Mode.FBM;
+            float warp = 0;
+            boolean eroded = false;
+            if (version >= 2) {
+                int modeIndex = header.get();
+                if (modeIndex < 0 || modeIndex >= FractalNoise.Mode.values().length) {
+                    throw new IOException(path + " has unknown fractal mode " + modeIndex);
+                }
+                mode = FractalNoise.Mode.values()[modeIndex];
+                eroded = header.get() != 0;
+                header.getShort();
+                warp = header.getFloat();
+            }
+
+            NoiseSettings settings = new NoiseSettings(seed, scale, octaves, persistance, lacunarity, offsetX, offsetY, precise);
+            HeightMapFile file = new HeightMapFile(channel, false, width, height, tileSize, format, settings, mode, warp, eroded);
+
+            long expected = HEADER_SIZE + file.tileRowBytes * file.tilesY;
+            if (channel.size() != expected) {
+                throw new IOException(path + " is " + channel.size() + " bytes, expected " + expected);
+            }
+            return file;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getTileSize() {
+        return tileSize;
+    }
+
+    public Format getFormat() {
+        return format;
+    }
+
+    public NoiseSettings getSettings() {
+        return settings;
+    }
+
+    public FractalNoise.Mode getMode() {
+        return mode;
+    }
+
+    // The strength of the domain warp by noise of the next seed, 0 for none.
+    public float getWarp() {
+        return warp;
+    }
+
+    // Whether erosion changed the map after it was generated, so it no longer follows from the settings alone.
+    public boolean isEroded() {
+        return eroded;
+    }
+
+    // Stores the heights of the source map with its top left corner at (x, y).
+    public void writeRegion(int x, int y, HeightMap source) throws IOException {
+        if (!writable) {
+            throw new IllegalStateException("Height map file is opened read-only");
+        }
+        checkRegion(x, y, source.getWidth(), source.getHeight());
+
+        float[] data = source.data();
+        for (int row = 0; row < source.getHeight(); row++) {
+            copyRow(x, y + row, source.getWidth(), data, source.index(0, row), true);
+        }
+    }
+
+    // Reads the region of the given size with its top left corner at (x, y).
+    public HeightMap readRegion(int x, int y, int regionWidth, int regionHeight) throws IOException {
+        HeightMap region = new HeightMap(regionWidth, regionHeight);
+        readRegion(x, y, region);
+        return region;
+    }
+
+    // Fills the target map with the heights starting at (x, y).
+    public void readRegion(int x, int y, HeightMap target) throws IOException {
+        checkRegion(x, y, target.getWidth(), target.getHeight());
+
+        float[] data = target.data();
+        for (int row = 0; row < target.getHeight(); row++) {
+            copyRow(x, y + row, target.getWidth(), data, target.index(0, row), false);
+        }
+    }
+
+    // A consumer that stores streamed rows, see TerrainNoise.streamNoiseMap.
+    public RowConsumer rowWriter() {
+        if (!writable) {
+            throw new IllegalStateException("Height map file is opened read-only");
+        }
+        return (y, row) -> {
+            try {
+                copyRow(0, y, width, row, 0, true);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        };
+    }
+
+    // Copies count samples of row y starting at column x between the file and the array, one tile at a time.
+    private void copyRow(int x, int y, int count, float[] data, int offset, boolean write) throws IOException {
+        int tileY = y / tileSize;
+        int inTileY = y - tileY * tileSize;
+
+        int end = x + count;
+        while (x < end) {
+            int tileX = x / tileSize;
+            int inTileX = x - tileX * tileSize;
+            int length = Math.min(end - x, tileSize - inTileX);
+            int index = (tileX * tileSize + inTileY) * tileSize + inTileX;
+
+            if (format == Format.FLOAT32) {
+                FloatBuffer samples = floatRow(tileY);
+                if (write) {
+                    samples.put(index, data, offset, length);
+                } else {
+                    samples.get(index, data, offset, length);
+                }
+            } else {
+                ShortBuffer samples = shortRow(tileY);
+                if (write) {
+                    for (int i = 0; i < length; i++) {
+                        samples.put(index + i, (short) Math.round(MathUtils.clamp(data[offset + i], 0, 1) * 65535));
+                    }
+                } else {
+                    for (int i = 0; i < length; i++) {
+                        data[offset + i] = (samples.get(index + i) & 0xFFFF) / 65535f;
+                    }
+                }
+            }
+
+            x += length;
+            offset += length;
+        }
+    }
+
+    private synchronized FloatBuffer floatRow(int tileY) throws IOException {
+        FloatBuffer samples = floatRows[tileY];
+        if (samples == null) {
+            samples = map(tileY).asFloatBuffer();
+            floatRows[tileY] = samples;
+        }
+        return samples;
+    }
+
+    private synchronized ShortBuffer shortRow(int tileY) throws IOException {
+        ShortBuffer samples = shortRows[tileY];
+        if (samples == null) {
+            samples = map(tileY).asShortBuffer();
+            shortRows[tileY] = samples;
+        }
+        return samples;
+    }
+
+    private synchronized MappedByteBuffer map(int tileY) throws IOException {
+        MappedByteBuffer buffer = tileRows[tileY];
+        if (buffer == null) {
+            buffer = channel.map(writable ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY,
+                    HEADER_SIZE + tileY * tileRowBytes, tileRowBytes);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            tileRows[tileY] = buffer;
+        }
+        return buffer;
+    }
+
+    private void checkRegion(int x, int y, int regionWidth, int regionHeight) {
+        if (x < 0 || y < 0 || regionWidth < 0 || regionHeight < 0 || x + regionWidth > width || y + regionHeight > height) {
+            throw new IndexOutOfBoundsException("Region " + x + "," + y + " " + regionWidth + "x" + regionHeight + " outside of " + width + "x" + height);
+        }
+    }
+
+    // Writes mapped changes back to the file.
+    public void flush() {
+        for (MappedByteBuffer buffer : tileRows) {
+            if (buffer != null && writable) {
+                buffer.force();
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+        channel.close();
+    }
+}
@@ -0,0 +1,17 @@
+package terrainGeneration;
+
+/**
+ * Receives the levels of a progressively generated height map, coarsest
+ * first, see {@link TerrainNoise#generateProgressive}.
+ */
+@FunctionalInterface
+public interface LevelListener {
+
+    /**
+     * @param step  the distance in pixels between the samples of the level,
+     *              1 for the full resolution map
+     * @param level the normalized heights of every step-th row and column,
+     *              ceil(width / step) x ceil(height / step)
+     */
+    void levelDone(int step, HeightMap level);
+}
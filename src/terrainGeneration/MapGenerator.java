@@ -1,23 +1,41 @@
 package terrainGeneration;
 
 import graphics.NoiseCanvas;
-import utils.ColorUtils;
+import utils.ColorRamp;
 import utils.Console;
-import utils.ConsoleUtils;
-import utils.MathUtils;
+import utils.Metrics;
+import utils.PngWriter;
 
 import javax.imageio.ImageIO;
 import java.awt.*;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
 
 public class MapGenerator {
 
     private static final int SEED = 42;
-    public final Vector offset = new Vector(0, 0);
+    private static final ColorRamp DEFAULT_COLOR_RAMP = ColorRamp.gradient(Color.black, Color.green);
+    // Sample spacing of the first preview, 1/16 of the full resolution.
+    private static final int PREVIEW_STEP = 16;
+
+    private static final Metrics.Stage COLORIZE = Metrics.stage("colorize");
+    private static final Metrics.Stage ENCODE_PNG = Metrics.stage("encode.png");
+    private static final Metrics.Stage WRITE_HEIGHT_MAP = Metrics.stage("write.heightmap");
+
+    // Read when a map is started, moving it pans the next map.
+    public final Vec2f offset = new Vec2f(0, 0);
 
     public final String fileName = "out.1.0.png";
+    public final String heightMapFileName = "out.1.0.hmap";
 
     public final int mapWidth = 1024;
     public final int mapHeight = 1024;
@@ -28,63 +46,186 @@ public class MapGenerator {
 
     public final float noiseScale = 1024f;
 
+    public final int threadCount = Runtime.getRuntime().availableProcessors();
+
+    public final ColorRamp colorRamp = DEFAULT_COLOR_RAMP;
+
     private NoiseCanvas canvas;
 
+    private final ExecutorService executor;
+    private final MapPipeline pipeline;
+
+    // The map being generated, cancelled when the next one is started.
+    private MapJob currentJob;
+    private CompletableFuture<Void> currentOutput;
+
     public MapGenerator(NoiseCanvas canvas) {
         this.canvas = canvas;
+        this.executor = new ForkJoinPool(threadCount);
+        this.pipeline = new MapPipeline(executor);
     }
 
+    // Generates on the given executor, which stays owned by the caller.
+    public MapGenerator(NoiseCanvas canvas, ExecutorService executor) {
+        this.canvas = canvas;
+        this.executor = executor;
+        this.pipeline = new MapPipeline(executor);
+    }
+
+    // Generates the map and waits until the image and the height map have been written.
     public void generateMap() {
-        float[][] noiseMap = TerrainNoise.generateNoiseMap(mapWidth, mapHeight, SEED, noiseScale, octaveCount, persistance, lacunarity, offset);
+        CompletableFuture<Void> output;
+        synchronized (this) {
+            generateMapAsync(TerrainNoise.QUIET ? null : TerrainNoise.CONSOLE_PROGRESS);
+            output = currentOutput;
+        }
+        output.join();
 
-        Console.log("Creating Image");
+        Console.log("Metrics: " + Metrics.toJson());
+    }
 
-        BufferedImage im = new BufferedImage(mapWidth, mapHeight, BufferedImage.TYPE_INT_RGB);
-
-        for (int x = 0; x < mapWidth; x++) {
-            Color color;
-            for (int y = 0; y < mapHeight; y++) {
-                int n = (int) MathUtils.lerp(0.0f, 100f, noiseMap[x][y]);
-                color = ColorUtils.lerp(Color.black, Color.green, noiseMap[x][y]);
-
-//                if (n < 20) {
-//                    color = Color.blue.darker();
-//                } else if (n < 30) {
-//                    color = Color.blue;
-//                } else if (n < 45) {
-//                    color = Color.blue.brighter();
-//                } else if (n < 51) {
-//                    color = Color.yellow;
-//                } else if (n < 62) {
-//                    color = Color.green.darker();
-//                } else if (n < 79) {
-//                    color = Color.green.darker().darker();
-//                } else if (n < 92) {
-//                    color = Color.gray;
-//                } else {
-//                    color = Color.white;
-//                }
-
-                im.setRGB(x, y, color.getRGB());
-            }
-            ConsoleUtils.printProgress((int) ((1.0f * x / mapWidth) * 100.0f));
+    // Starts generating the map in the background and cancels the map started before it, if that one is still running.
+    // The coarse levels are painted as previews while the finer ones are being sampled, the image and the height map
+    // are written on the executor once the map is done. The images are colored serially by the worker that got them,
+    // so a bounded executor cannot deadlock waiting for itself.
+    public synchronized MapJob generateMapAsync(ProgressListener listener) {
+        if (currentJob != null) {
+            currentJob.cancel();
         }
 
-        System.out.println();
+        NoiseSettings settings = settings();
+        HeightMap noiseMap = new HeightMap(mapWidth, mapHeight);
+
+        MapJob job = TerrainNoise.generateProgressiveAsync(noiseMap, new FractalNoise(settings), settings, executor, threadCount * 4, PREVIEW_STEP,
+                (step, level) -> {
+                    if (step > 1) {
+                        canvas.paintMap(createImage(level, colorRamp, null));
+                    }
+                }, listener);
+
+        currentJob = job;
+        currentOutput = job.result().thenAcceptAsync(map -> {
+            BufferedImage im = createImage(map, colorRamp, null);
+            canvas.paintMap(im);
+
+            writeImage(im, new File(fileName), executor);
+            writeHeightMap(map, settings, new File(heightMapFileName));
+        }, executor);
+
+        return job;
+    }
+
+    // Renders the map of the settings with the ramp and paints it, for editing the parameters. The stages whose
+    // parameters did not change since an earlier call come from the cache of the pipeline: a new ramp only recolors
+    // the map, a new persistance only sums the octaves again. The image is shared with the cache.
+    public BufferedImage renderMap(NoiseSettings settings, ColorRamp colorRamp) {
+        BufferedImage im = pipeline.image(settings, mapWidth, mapHeight, colorRamp);
+        canvas.paintMap(im);
+        return im;
+    }
+
+    // The tiles of the endless map of the same settings, for the viewport of the canvas.
+    public NoiseTiles tiles() {
+        NoiseSettings settings = settings();
+        return new NoiseTiles(new FractalNoise(settings), settings, colorRamp);
+    }
+
+    // The settings of the maps this generator creates.
+    public NoiseSettings settings() {
+        return new NoiseSettings(SEED, noiseScale, octaveCount, persistance, lacunarity, offset, false);
+    }
+
+    public static BufferedImage createImage(HeightMap noiseMap) {
+        return createImage(noiseMap, DEFAULT_COLOR_RAMP, null);
+    }
+
+    // Colors the map through the ramp straight into the pixel array of the image, in row order.
+    // With an executor the rows are split into bands that are colored in parallel.
+    public static BufferedImage createImage(HeightMap noiseMap, ColorRamp colorRamp, ExecutorService executor) {
+        BufferedImage im = new BufferedImage(noiseMap.getWidth(), noiseMap.getHeight(), BufferedImage.TYPE_INT_RGB);
+        colorize(noiseMap, colorRamp, im, executor);
+        return im;
+    }
+
+    // Colors the map into an existing TYPE_INT_RGB image of the same size, so the image can be reused between maps.
+    public static void colorize(HeightMap noiseMap, ColorRamp colorRamp, BufferedImage im, ExecutorService executor) {
+        Console.log("Creating Image");
+        Metrics.Timer timer = COLORIZE.start();
+
+        int width = noiseMap.getWidth();
+        int height = noiseMap.getHeight();
+        float[] heights = noiseMap.data();
+
+        if (im.getType() != BufferedImage.TYPE_INT_RGB || im.getWidth() != width || im.getHeight() != height) {
+            throw new IllegalArgumentException("Expected a " + width + "x" + height + " TYPE_INT_RGB image");
+        }
+        int[] pixels = ((DataBufferInt) im.getRaster().getDataBuffer()).getData();
+
+        int bands = executor == null ? 1 : Math.min(height, Runtime.getRuntime().availableProcessors() * 4);
+        int bandHeight = (height + bands - 1) / Math.max(1, bands);
+
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int startY = 0; startY < height; startY += bandHeight) {
+            int fromY = startY;
+            int toY = Math.min(startY + bandHeight, height);
+            tasks.add(() -> {
+                for (int y = fromY; y < toY; y++) {
+                    colorRamp.colorize(heights, noiseMap.index(0, y), pixels, y * width, width);
+                }
+                return null;
+            });
+        }
+        TerrainNoise.runAll(tasks, executor);
 
+        timer.stop((long) width * height);
         Console.log("    Done");
+    }
+
+    public static void writeImage(BufferedImage im, File file) {
+        writeImage(im, file, null);
+    }
 
-        new Thread(() -> {
-            Console.log("Writing to File: " + fileName);
-            try {
-                ImageIO.write(im, "PNG", new File(fileName));
-            } catch (IOException e) {
-                e.printStackTrace();
+    // TYPE_INT_RGB images are encoded straight from their pixel array, deflated in parallel on the executor.
+    public static void writeImage(BufferedImage im, File file, Executor executor) {
+        Console.log("Writing to File: " + file);
+        try {
+            Metrics.Timer timer = ENCODE_PNG.start();
+            if (im.getType() == BufferedImage.TYPE_INT_RGB) {
+                int[] pixels = ((DataBufferInt) im.getRaster().getDataBuffer()).getData();
+                PngWriter.writeRgb(pixels, im.getWidth(), im.getHeight(), file.toPath(), executor);
+            } else {
+                ImageIO.write(im, "PNG", file);
             }
-            Console.log("Done");
-        }).start();
+            timer.stop(countWritten(file));
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        Console.log("Done");
+    }
 
-        canvas.paintMap(im);
+    // Writes the heights to a memory-mapped height map file that can be reopened without decoding an image.
+    public static void writeHeightMap(HeightMap noiseMap, NoiseSettings settings, File file) {
+        Console.log("Writing to File: " + file);
+        Metrics.Timer timer = WRITE_HEIGHT_MAP.start();
+        try (HeightMapFile heightMapFile = HeightMapFile.create(file.toPath(), noiseMap.getWidth(), noiseMap.getHeight(), 256, HeightMapFile.Format.FLOAT32, settings)) {
+            heightMapFile.writeRegion(0, 0, noiseMap);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        timer.stop(countWritten(file));
+        Console.log("Done");
+    }
+
+    // Adds the size of the written file to the bytes.written counter and returns it.
+    public static long countWritten(File file) {
+        long bytes = file.length();
+        Metrics.counter("bytes.written").add(bytes);
+        return bytes;
+    }
+
+    // Colorizes the height map and writes it as a PNG.
+    public static void writeImage(HeightMap noiseMap, File file) {
+        writeImage(createImage(noiseMap), file);
     }
 
 }
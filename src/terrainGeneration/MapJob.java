@@ -0,0 +1,111 @@
+package terrainGeneration;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Handle of a map that is generated in the background, see
+ * {@link TerrainNoise#generateAsync}. The result completes with the
+ * normalized map. Cancelling the job, or completing its result in any other
+ * way, stops the workers after the rows they are sampling, so a superseded
+ * map does not keep the cores busy.
+ * <p>
+ * The workers count their rows in {@link LongAdder}s that a
+ * {@link ProgressReporter} samples for the listener. A job without a
+ * listener runs quiet and does not count at all.
+ */
+public final class MapJob {
+
+    private final int totalRows;
+    private final long totalSamples;
+    private final boolean counted;
+
+    private final CompletableFuture<HeightMap> result = new CompletableFuture<>();
+    private final long startNanos = System.nanoTime();
+
+    private final LongAdder rowsDone = new LongAdder();
+    private final LongAdder samplesDone = new LongAdder();
+
+    // Null for a quiet job.
+    private ProgressReporter reporter;
+
+    private MapJob(int totalRows, long totalSamples, boolean counted) {
+        this.totalRows = totalRows;
+        this.totalSamples = totalSamples;
+        this.counted = counted;
+    }
+
+    // A job reporting to the listener, or a quiet one if the listener is null.
+    static MapJob start(int totalRows, long totalSamples, ProgressListener listener) {
+        MapJob job = new MapJob(totalRows, totalSamples, listener != null);
+        if (listener != null) {
+            ProgressReporter reporter = ProgressReporter.watch(job, listener);
+            job.reporter = reporter;
+            // Also stops the reporter if the result is completed from outside, through cancel or otherwise.
+            job.result.whenComplete((noiseMap, failure) -> reporter.stop(job.progress()));
+        }
+        return job;
+    }
+
+    public CompletableFuture<HeightMap> result() {
+        return result;
+    }
+
+    public boolean cancel() {
+        return result.cancel(false);
+    }
+
+    public boolean isCancelled() {
+        return result.isCancelled();
+    }
+
+    public boolean isDone() {
+        return result.isDone();
+    }
+
+    // A quiet job only knows whether it is done, and reports all rows once it completed normally.
+    public GenerationProgress progress() {
+        return progress(result.isDone());
+    }
+
+    private GenerationProgress progress(boolean done) {
+        long elapsedNanos = System.nanoTime() - startNanos;
+        if (!counted) {
+            return done && !result.isCompletedExceptionally() ? new GenerationProgress(totalRows, totalRows, totalSamples, totalSamples, elapsedNanos, true)
+                    : new GenerationProgress(0, totalRows, 0, totalSamples, elapsedNanos, done);
+        }
+        return new GenerationProgress(rowsDone.intValue(), totalRows, samplesDone.sum(), totalSamples, elapsedNanos, done);
+    }
+
+    // Throws once the result is complete, a worker calls it before every row.
+    void checkCancelled() {
+        if (result.isDone()) {
+            throw new CancellationException("The map job was cancelled");
+        }
+    }
+
+    // Counts a finished row of the given number of samples.
+    void rowDone(int samples) {
+        if (counted) {
+            rowsDone.increment();
+            samplesDone.add(samples);
+        }
+    }
+
+    // The last progress event is published before the result completes, so it reaches the listener before anyone
+    // waiting for the result continues.
+    void complete(HeightMap noiseMap) {
+        if (reporter != null && !result.isDone()) {
+            reporter.stop(progress(true));
+        }
+        result.complete(noiseMap);
+    }
+
+    void fail(Throwable cause) {
+        if (reporter != null && !result.isDone()) {
+            reporter.stop(progress(true));
+        }
+        result.completeExceptionally(cause);
+    }
+}
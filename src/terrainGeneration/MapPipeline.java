@@ -0,0 +1,230 @@
+package terrainGeneration;
+
+import utils.ColorRamp;
+import utils.Console;
+import utils.Metrics;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Generates maps and their images through a cache of the intermediate
+ * results, so a change of the parameters only redoes the stages that depend
+ * on them. The stages and what they depend on:
+ * <ul>
+ *     <li>octave layers, the samples of every octave on their own, on the
+ *     seed, scale, lacunarity, offset, precision and size,</li>
+ *     <li>the normalized height map, the layers combined, on the octave
+ *     count, persistance and fractal mode in addition,</li>
+ *     <li>the image, on the height map and the color ramp.</li>
+ * </ul>
+ * A new ramp only recolors the cached map, a new persistance only sums the
+ * cached layers again, more octaves only sample the new ones. The maps are
+ * bit-identical to {@link TerrainNoise#generateNoiseMap} with a
+ * {@link FractalNoise} of the same settings.
+ * <p>
+ * The least recently used results are evicted once the cache exceeds its
+ * budget. Maps whose layers do not fit into the budget are summed directly
+ * without keeping their layers. The returned maps and images are shared with the cache and must
+ * not be modified.
+ */
+public final class MapPipeline {
+
+    // The memory for cached results, -Dterrain.pipelineCache=<megabytes> overrides it, a quarter of the heap by default.
+    public static final long DEFAULT_BUDGET = Long.getLong("terrain.pipelineCache", Runtime.getRuntime().maxMemory() / 4 >> 20) << 20;
+
+    private static final Metrics.Stage LAYER = Metrics.stage("pipeline.layer");
+    private static final Metrics.Stage SUM = Metrics.stage("pipeline.sum");
+
+    private static final LongAdder HITS = Metrics.counter("pipeline.cache.hits");
+    private static final LongAdder MISSES = Metrics.counter("pipeline.cache.misses");
+
+    private final ExecutorService executor;
+    private final long budget;
+
+    // Access order, the eldest entry is the least recently used one.
+    private final LinkedHashMap<List<Object>, Object> results = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<List<Object>, Long> sizes = new HashMap<>();
+    private long size;
+
+    // A null executor runs every stage on the calling thread.
+    public MapPipeline(ExecutorService executor) {
+        this(executor, DEFAULT_BUDGET);
+    }
+
+    public MapPipeline(ExecutorService executor, long budget) {
+        this.executor = executor;
+        this.budget = budget;
+    }
+
+    // The colored fBm map of the settings.
+    public BufferedImage image(NoiseSettings settings, int width, int height, ColorRamp colorRamp) {
+        return image(settings, FractalNoise.Mode.FBM, width, height, colorRamp);
+    }
+
+    public synchronized BufferedImage image(NoiseSettings settings, FractalNoise.Mode mode, int width, int height, ColorRamp colorRamp) {
+        List<Object> key = List.of("image", mapKey(settings, mode, width, height), colorRamp);
+        BufferedImage image = (BufferedImage) get(key);
+        if (image == null) {
+            HeightMap map = heightMap(settings, mode, width, height);
+            image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            MapGenerator.colorize(map, colorRamp, image, executor);
+            put(key, image, 4L * width * height);
+        }
+        return image;
+    }
+
+    // The normalized fBm map of the settings.
+    public HeightMap heightMap(NoiseSettings settings, int width, int height) {
+        return heightMap(settings, FractalNoise.Mode.FBM, width, height);
+    }
+
+    public synchronized HeightMap heightMap(NoiseSettings settings, FractalNoise.Mode mode, int width, int height) {
+        List<Object> key = mapKey(settings, mode, width, height);
+        HeightMap map = (HeightMap) get(key);
+        if (map != null) {
+            return map;
+        }
+
+        FractalNoise fractal = new FractalNoise(NoiseCache.shared().get(settings.seed), mode, settings);
+
+        // Layers that do not fit into the budget next to the map are not sampled one by one, the map is summed
+        // directly like generateNoiseMap does, which only needs the memory of the map.
+        if (4L * width * height * (settings.octaves + 1) > budget) {
+            map = new HeightMap(width, height);
+            TerrainNoise.generateNoiseMap(map, fractal, settings, executor, bands(height).size());
+            put(key, map, 4L * width * height);
+            return map;
+        }
+
+        NoiseSampler sampler = new NoiseSampler(fractal, settings, -width / 2f, -height / 2f, width);
+        float[][] layers = new float[settings.octaves][];
+        for (int octave = 0; octave < settings.octaves; octave++) {
+            layers[octave] = layer(fractal, sampler, settings, octave, width, height);
+        }
+
+        Metrics.Timer timer = SUM.start();
+        map = new HeightMap(width, height);
+        HeightMap sum = map;
+        float[] heights = map.data();
+        List<Callable<NoiseRange>> sumTasks = new ArrayList<>();
+        for (int[] band : bands(height)) {
+            sumTasks.add(() -> {
+                NoiseRange range = new NoiseRange();
+                for (int y = band[0]; y < band[1]; y++) {
+                    int row = sum.index(0, y);
+                    fractal.sumOctaves(layers, y * width, width, heights, row);
+                    for (int x = 0; x < width; x++) {
+                        range.include(heights[row + x]);
+                    }
+                }
+                return range;
+            });
+        }
+        NoiseRange range = new NoiseRange();
+        for (NoiseRange bandRange : TerrainNoise.runAll(sumTasks, executor)) {
+            range.include(bandRange);
+        }
+
+        List<Callable<Void>> normalizeTasks = new ArrayList<>();
+        for (int[] band : bands(height)) {
+            normalizeTasks.add(() -> {
+                sum.normalize(range.getMin(), range.getMax(), band[0], band[1]);
+                return null;
+            });
+        }
+        TerrainNoise.runAll(normalizeTasks, executor);
+        timer.stop((long) width * height);
+
+        put(key, map, 4L * width * height);
+        return map;
+    }
+
+    public synchronized long size() {
+        return size;
+    }
+
+    public synchronized void clear() {
+        results.clear();
+        sizes.clear();
+        size = 0;
+    }
+
+    // The samples of one octave over the whole map, row after row.
+    private float[] layer(FractalNoise fractal, NoiseSampler sampler, NoiseSettings settings, int octave, int width, int height) {
+        List<Object> key = List.of("layer", settings.seed, settings.scale, settings.lacunarity, settings.offsetX, settings.offsetY,
+                settings.precise, width, height, octave);
+        float[] layer = (float[]) get(key);
+        if (layer != null) {
+            return layer;
+        }
+
+        Console.log("Sampling octave " + (octave + 1) + " of " + settings.octaves);
+        Metrics.Timer timer = LAYER.start();
+        float[] samples = new float[width * height];
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int[] band : bands(height)) {
+            tasks.add(() -> {
+                for (int y = band[0]; y < band[1]; y++) {
+                    sampler.fillOctaveRow(fractal, octave, y, samples, y * width);
+                }
+                return null;
+            });
+        }
+        TerrainNoise.runAll(tasks, executor);
+        timer.stop((long) width * height);
+
+        put(key, samples, 4L * width * height);
+        return samples;
+    }
+
+    private static List<Object> mapKey(NoiseSettings settings, FractalNoise.Mode mode, int width, int height) {
+        return List.of("map", mode, settings.seed, settings.scale, settings.octaves, settings.persistance, settings.lacunarity,
+                settings.offsetX, settings.offsetY, settings.precise, width, height);
+    }
+
+    // Row bands [from, to) for the executor, a single band without one.
+    private List<int[]> bands(int height) {
+        int bands = executor == null ? 1 : Math.min(height, Runtime.getRuntime().availableProcessors() * 4);
+        int bandHeight = (height + bands - 1) / Math.max(1, bands);
+        List<int[]> result = new ArrayList<>();
+        for (int startY = 0; startY < height; startY += bandHeight) {
+            result.add(new int[]{startY, Math.min(startY + bandHeight, height)});
+        }
+        return result;
+    }
+
+    private Object get(List<Object> key) {
+        Object result = results.get(key);
+        if (result != null) {
+            HITS.increment();
+        } else {
+            MISSES.increment();
+        }
+        return result;
+    }
+
+    // Results larger than the whole budget are not kept.
+    private void put(List<Object> key, Object result, long bytes) {
+        if (bytes > budget) {
+            return;
+        }
+        results.put(key, result);
+        Long replaced = sizes.put(key, bytes);
+        size += bytes - (replaced == null ? 0 : replaced);
+
+        for (Iterator<List<Object>> keys = results.keySet().iterator(); size > budget && keys.hasNext(); ) {
+            List<Object> eldest = keys.next();
+            keys.remove();
+            size -= sizes.remove(eldest);
+        }
+    }
+}
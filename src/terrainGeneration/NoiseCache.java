@@ -0,0 +1,82 @@
+package terrainGeneration;
+
+import utils.Metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded cache of {@link OpenSimplexNoise} instances keyed by seed, so
+ * the permutation tables of a seed are built once and shared by every
+ * thread. Instances are immutable. The least recently used seed is evicted
+ * once the cache is full. Hits and misses are counted in the
+ * {@code noise.cache.hits} and {@code noise.cache.misses} metrics.
+ */
+public final class NoiseCache {
+
+    // Seeds kept by the shared cache, -Dterrain.noiseCache=<seeds> overrides it.
+    public static final int DEFAULT_CAPACITY = Integer.getInteger("terrain.noiseCache", 64);
+
+    private static final NoiseCache SHARED = new NoiseCache(DEFAULT_CAPACITY);
+
+    private static final LongAdder HITS = Metrics.counter("noise.cache.hits");
+    private static final LongAdder MISSES = Metrics.counter("noise.cache.misses");
+
+    private final int capacity;
+    private final Map<Long, OpenSimplexNoise> noises;
+
+    public NoiseCache(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("The capacity has to be at least 1 but was " + capacity);
+        }
+        this.capacity = capacity;
+        // Access order, the eldest entry is the least recently used one.
+        this.noises = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, OpenSimplexNoise> eldest) {
+                return size() > NoiseCache.this.capacity;
+            }
+        };
+    }
+
+    public static NoiseCache shared() {
+        return SHARED;
+    }
+
+    // The noise of the seed, built outside of the lock on a miss, so a slow miss does not hold up hits of other seeds.
+    // Two threads missing the same seed at once may both build it, the first one stored wins.
+    public OpenSimplexNoise get(long seed) {
+        OpenSimplexNoise noise;
+        synchronized (noises) {
+            noise = noises.get(seed);
+        }
+        if (noise != null) {
+            HITS.increment();
+            return noise;
+        }
+
+        MISSES.increment();
+        OpenSimplexNoise created = new OpenSimplexNoise(seed);
+        synchronized (noises) {
+            noise = noises.putIfAbsent(seed, created);
+        }
+        return noise != null ? noise : created;
+    }
+
+    public int size() {
+        synchronized (noises) {
+            return noises.size();
+        }
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public void clear() {
+        synchronized (noises) {
+            noises.clear();
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package terrainGeneration;
+
+/**
+ * Running minimum and maximum of a set of noise heights. Every band of a
+ * map keeps its own range, the ranges are combined once all bands are done.
+ */
+public final class NoiseRange {
+
+    private float min;
+    private float max;
+
+    // An empty range, grown through include.
+    public NoiseRange() {
+        this(Float.MAX_VALUE, -Float.MAX_VALUE);
+    }
+
+    public NoiseRange(float min, float max) {
+        this.min = min;
+        this.max = max;
+    }
+
+    public void include(float value) {
+        if (value < min) {
+            min = value;
+        }
+        if (value > max) {
+            max = value;
+        }
+    }
+
+    public void include(NoiseRange other) {
+        if (other.min < min) {
+            min = other.min;
+        }
+        if (other.max > max) {
+            max = other.max;
+        }
+    }
+
+    public float getMin() {
+        return min;
+    }
+
+    public float getMax() {
+        return max;
+    }
+
+    @Override
+    public String toString() {
+        return "[" + min + " | " + max + "]";
+    }
+}
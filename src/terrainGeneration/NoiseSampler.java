@@ -0,0 +1,71 @@
+package terrainGeneration;
+
+/**
+ * Samples a {@link NoiseSource} over the pixels of one region. Pixel (x, y)
+ * of the region is sampled at ((originX + x * step) / scale, (originY + y) / scale),
+ * the x coordinates of all columns are computed once. With precise settings
+ * the rows are sampled from double coordinates.
+ */
+final class NoiseSampler {
+
+    private final NoiseSource source;
+
+    private final int width;
+    private final float scale;
+    private final float originY;
+    private final double preciseOriginY;
+
+    private final float[] columnX;
+    // Only for precise settings, null otherwise.
+    private final double[] preciseColumnX;
+
+    NoiseSampler(NoiseSource source, NoiseSettings settings, double originX, double originY, int width) {
+        this(source, settings, originX, originY, width, 1);
+    }
+
+    NoiseSampler(NoiseSource source, NoiseSettings settings, double originX, double originY, int width, int step) {
+        this.source = source;
+        this.width = width;
+        this.scale = settings.scale <= 0 ? 0.0001f : settings.scale;
+        this.originY = (float) originY;
+        this.preciseOriginY = originY;
+
+        float floatOriginX = (float) originX;
+        columnX = new float[width];
+        for (int x = 0; x < width; x++) {
+            columnX[x] = (x * step + floatOriginX) / scale;
+        }
+
+        if (settings.precise) {
+            preciseColumnX = new double[width];
+            for (int x = 0; x < width; x++) {
+                preciseColumnX[x] = ((double) x * step + originX) / scale;
+            }
+        } else {
+            preciseColumnX = null;
+        }
+    }
+
+    int getWidth() {
+        return width;
+    }
+
+    // Writes the samples of a single octave of the fractal along row y, see FractalNoise.evalOctaveRow. The
+    // coordinates are the ones fillRow passes to the source.
+    void fillOctaveRow(FractalNoise fractal, int octave, int y, float[] heights, int rowOffset) {
+        if (preciseColumnX != null) {
+            fractal.evalOctaveRow(octave, preciseColumnX, 0, (y + preciseOriginY) / scale, width, heights, rowOffset);
+        } else {
+            fractal.evalOctaveRow(octave, columnX, 0, (y + originY) / scale, width, heights, rowOffset);
+        }
+    }
+
+    // Writes the raw heights of row y to heights[rowOffset, rowOffset + width).
+    void fillRow(int y, float[] heights, int rowOffset) {
+        if (preciseColumnX != null) {
+            source.evalRow(preciseColumnX, 0, (y + preciseOriginY) / scale, width, heights, rowOffset);
+        } else {
+            source.evalRow(columnX, 0, (y + originY) / scale, width, heights, rowOffset);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package terrainGeneration;
+
+/**
+ * The parameters that, together with a position, fully determine a noise
+ * height. Immutable and therefore thread-safe.
+ */
+public final class NoiseSettings {
+
+    public final int seed;
+    public final float scale;
+    public final int octaves;
+    public final float persistance;
+    public final float lacunarity;
+    // The offset of the pattern, kept as primitives so setting up an octave does not go through a Vector.
+    public final float offsetX;
+    public final float offsetY;
+    // Samples in double precision, for maps far from the origin. Slower, see NoiseBenchmark.
+    public final boolean precise;
+
+    public NoiseSettings(int seed, float scale, int octaves, float persistance, float lacunarity, Vector offset) {
+        this(seed, scale, octaves, persistance, lacunarity, offset, false);
+    }
+
+    public NoiseSettings(int seed, float scale, int octaves, float persistance, float lacunarity, Vector offset, boolean precise) {
+        this(seed, scale, octaves, persistance, lacunarity, offset.get(0), offset.get(1), precise);
+    }
+
+    public NoiseSettings(int seed, float scale, int octaves, float persistance, float lacunarity, Vec2f offset, boolean precise) {
+        this(seed, scale, octaves, persistance, lacunarity, offset.x, offset.y, precise);
+    }
+
+    public NoiseSettings(int seed, float scale, int octaves, float persistance, float lacunarity, float offsetX, float offsetY, boolean precise) {
+        this.seed = seed;
+        this.scale = scale;
+        this.octaves = octaves;
+        this.persistance = persistance;
+        this.lacunarity = lacunarity;
+        this.offsetX = offsetX;
+        this.offsetY = offsetY;
+        this.precise = precise;
+    }
+
+    // A copy of the offset, the settings stay immutable.
+    public Vec2f offset() {
+        return new Vec2f(offsetX, offsetY);
+    }
+
+    // The largest absolute height the octave sum can reach, every octave contributes at most its amplitude.
+    public float amplitudeBound() {
+        float bound = 0;
+        float amplitude = 1;
+        for (int i = 0; i < octaves; i++) {
+            bound += Math.abs(amplitude);
+            amplitude *= persistance;
+        }
+        return bound;
+    }
+
+    // Normalization range that only depends on the settings, so separately generated regions match up.
+    public NoiseRange fixedRange() {
+        float bound = amplitudeBound();
+        return new NoiseRange(-bound, bound);
+    }
+
+    @Override
+    public String toString() {
+        return "Seed: " + seed + " Scale: " + scale + " Octaves: " + octaves + " Persistance: " + persistance
+                + " Lacunarity: " + lacunarity + " Offset: [" + offsetX + " " + offsetY + "]" + (precise ? " Precise" : "");
+    }
+}
@@ -0,0 +1,50 @@
+package terrainGeneration;
+
+/**
+ * A 2D noise function, sampled one point at a time or a batch of points at a
+ * time. The batch methods let a source amortize its per call work over a
+ * whole scanline, {@link OpenSimplexNoise} runs them on its SIMD kernel when
+ * available. Implementations must be safe to share between threads.
+ */
+public interface NoiseSource {
+
+    float eval(float x, float y);
+
+    // Double precision for coordinates far from the origin, sources without a precise kernel round to float.
+    default double eval(double x, double y) {
+        return eval((float) x, (float) y);
+    }
+
+    // out[offset + i] = eval(xs[xsOffset + i], y)
+    default void evalRow(float[] xs, int xsOffset, float y, int count, float[] out, int offset) {
+        for (int i = 0; i < count; i++) {
+            out[offset + i] = eval(xs[xsOffset + i], y);
+        }
+    }
+
+    // out[offset + i] = (float) eval(xs[xsOffset + i], y)
+    default void evalRow(double[] xs, int xsOffset, double y, int count, float[] out, int offset) {
+        for (int i = 0; i < count; i++) {
+            out[offset + i] = (float) eval(xs[xsOffset + i], y);
+        }
+    }
+
+    // out[offset + i] = eval(xs[xyOffset + i], ys[xyOffset + i]), for points that are not on a line.
+    default void evalPoints(float[] xs, float[] ys, int xyOffset, int count, float[] out, int offset) {
+        for (int i = 0; i < count; i++) {
+            out[offset + i] = eval(xs[xyOffset + i], ys[xyOffset + i]);
+        }
+    }
+
+    // out[offset + i] = (float) eval(xs[xyOffset + i], ys[xyOffset + i])
+    default void evalPoints(double[] xs, double[] ys, int xyOffset, int count, float[] out, int offset) {
+        for (int i = 0; i < count; i++) {
+            out[offset + i] = (float) eval(xs[xyOffset + i], ys[xyOffset + i]);
+        }
+    }
+
+    // Bounds of the values the source returns, used to normalize maps independently of their content.
+    default NoiseRange range() {
+        return new NoiseRange(-1, 1);
+    }
+}
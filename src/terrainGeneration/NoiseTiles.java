@@ -0,0 +1,38 @@
+package terrainGeneration;
+
+import graphics.TileSource;
+import utils.ColorRamp;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+
+/**
+ * Colored tiles of a noise source for the viewport of a
+ * {@link graphics.NoiseCanvas}. Every tile is a region normalized with the
+ * range of the source, so neighbouring tiles join up without seams at any
+ * level of detail. Thread-safe as long as the source is.
+ */
+public final class NoiseTiles implements TileSource {
+
+    private final NoiseSource source;
+    private final NoiseSettings settings;
+    private final ColorRamp colorRamp;
+
+    public NoiseTiles(NoiseSource source, NoiseSettings settings, ColorRamp colorRamp) {
+        this.source = source;
+        this.settings = settings;
+        this.colorRamp = colorRamp;
+    }
+
+    @Override
+    public BufferedImage renderTile(int originX, int originY, int size, int step) {
+        HeightMap region = TerrainNoise.generateRegion(source, settings, originX, originY, size, size, step);
+
+        BufferedImage image = new BufferedImage(size, size, BufferedImage.TYPE_INT_RGB);
+        int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        for (int y = 0; y < size; y++) {
+            colorRamp.colorize(region.data(), region.index(0, y), pixels, y * size, size);
+        }
+        return image;
+    }
+}
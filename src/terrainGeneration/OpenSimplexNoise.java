@@ -18,25 +18,113 @@ package terrainGeneration;
 
 import utils.MathUtils;
 
-public class OpenSimplexNoise {
+import java.lang.reflect.Constructor;
 
-    private static final float STRETCH_2D = -0.211324865405187f;    //(1/Math.sqrt(2+1)-1)/2;
-    private static final float SQUISH_2D = 0.366025403784439f;      //(Math.sqrt(2+1)-1)/2;
+public class OpenSimplexNoise implements NoiseSource {
 
-    private static final float NORM_2D = 1.0f / 47.0f;
+    static final float STRETCH_2D = -0.211324865405187f;    //(1/Math.sqrt(2+1)-1)/2;
+    static final float SQUISH_2D = 0.366025403784439f;      //(Math.sqrt(2+1)-1)/2;
 
-    private byte[] perm;
-    private byte[] perm2D;
+    private static final double STRETCH_2D_PRECISE = -0.211324865405187;
+    private static final double SQUISH_2D_PRECISE = 0.366025403784439;
+    //STRETCH_2D_PRECISE * 2^32, exact since it only changes the exponent.
+    private static final double STRETCH_2D_PRECISE_HIGH = STRETCH_2D_PRECISE * 0x1p32;
 
-    private static float[] gradients2D = new float[]{
+    static final float STRETCH_3D = -1.0f / 6;                //(1/Math.sqrt(3+1)-1)/3;
+    static final float SQUISH_3D = 1.0f / 3;                  //(Math.sqrt(3+1)-1)/3;
+    static final float STRETCH_4D = -0.138196601125011f;    //(1/Math.sqrt(4+1)-1)/4;
+    static final float SQUISH_4D = 0.309016994374947f;      //(Math.sqrt(4+1)-1)/4;
+
+    static final float NORM_2D = 1.0f / 47.0f;
+    static final float NORM_3D = 1.0f / 103.0f;
+    static final float NORM_4D = 1.0f / 30.0f;
+
+    //Creates the SIMD row kernel when jdk.incubator.vector is present (--add-modules jdk.incubator.vector)
+    //and the hardware has at least 8 float lanes, null otherwise. -Dopensimplex.vector=false disables it.
+    private static final Constructor<?> VECTOR_KERNEL = findVectorKernel();
+
+    //The coordinates of evalRow and evalGrid with a constant step, shared by all instances.
+    private static final ScratchBuffers SCRATCH = new ScratchBuffers(1);
+
+    //Final, so instances can be shared between threads through NoiseCache.
+    final byte[] perm;
+    private final byte[] perm2D;
+    final byte[] permGradIndex3D;
+    //perm[(perm[x & 0xFF] + y) & 0xFF] at (x & 0xFF) << 8 | (y & 0xFF), the first two levels of every hash in one
+    //lookup. Row x is perm rotated left by perm[x].
+    private final byte[] permXY;
+    private final RowKernel2D rowKernel2D;
+
+    static float[] gradients2D = new float[]{
             5, 2, 2, 5,
             -5, 2, -2, 5,
             5, -2, 2, -5,
             -5, -2, -2, -5,
     };
 
+    //Gradients for 3D. They approximate the directions to the
+    //vertices of a rhombicuboctahedron from the center, skewed so
+    //that the triangular and square facets can be inscribed inside
+    //circles of the same radius.
+    static float[] gradients3D = new float[]{
+            -11, 4, 4, -4, 11, 4, -4, 4, 11,
+            11, 4, 4, 4, 11, 4, 4, 4, 11,
+            -11, -4, 4, -4, -11, 4, -4, -4, 11,
+            11, -4, 4, 4, -11, 4, 4, -4, 11,
+            -11, 4, -4, -4, 11, -4, -4, 4, -11,
+            11, 4, -4, 4, 11, -4, 4, 4, -11,
+            -11, -4, -4, -4, -11, -4, -4, -4, -11,
+            11, -4, -4, 4, -11, -4, 4, -4, -11,
+    };
+
+    //Gradients for 4D. They approximate the directions to the
+    //vertices of a disprismatotesseractihexadecachoron from the center,
+    //skewed so that the tetrahedral and cubic facets can be inscribed inside
+    //spheres of the same radius.
+    static float[] gradients4D = new float[]{
+            3, 1, 1, 1, 1, 3, 1, 1, 1, 1, 3, 1, 1, 1, 1, 3,
+            -3, 1, 1, 1, -1, 3, 1, 1, -1, 1, 3, 1, -1, 1, 1, 3,
+            3, -1, 1, 1, 1, -3, 1, 1, 1, -1, 3, 1, 1, -1, 1, 3,
+            -3, -1, 1, 1, -1, -3, 1, 1, -1, -1, 3, 1, -1, -1, 1, 3,
+            3, 1, -1, 1, 1, 3, -1, 1, 1, 1, -3, 1, 1, 1, -1, 3,
+            -3, 1, -1, 1, -1, 3, -1, 1, -1, 1, -3, 1, -1, 1, -1, 3,
+            3, -1, -1, 1, 1, -3, -1, 1, 1, -1, -3, 1, 1, -1, -1, 3,
+            -3, -1, -1, 1, -1, -3, -1, 1, -1, -1, -3, 1, -1, -1, -1, 3,
+            3, 1, 1, -1, 1, 3, 1, -1, 1, 1, 3, -1, 1, 1, 1, -3,
+            -3, 1, 1, -1, -1, 3, 1, -1, -1, 1, 3, -1, -1, 1, 1, -3,
+            3, -1, 1, -1, 1, -3, 1, -1, 1, -1, 3, -1, 1, -1, 1, -3,
+            -3, -1, 1, -1, -1, -3, 1, -1, -1, -1, 3, -1, -1, -1, 1, -3,
+            3, 1, -1, -1, 1, 3, -1, -1, 1, 1, -3, -1, 1, 1, -1, -3,
+            -3, 1, -1, -1, -1, 3, -1, -1, -1, 1, -3, -1, -1, 1, -1, -3,
+            3, -1, -1, -1, 1, -3, -1, -1, 1, -1, -3, -1, 1, -1, -1, -3,
+            -3, -1, -1, -1, -1, -3, -1, -1, -1, -1, -3, -1, -1, -1, -1, -3,
+    };
+
     private static Contribution2[] lookup2D;
 
+    //Flattened copy of lookup2D: the contributions of lookup index h are stored at
+    //[h * LOOKUP_SIZE_2D, h * LOOKUP_SIZE_2D + LOOKUP_SIZE_2D) in the same order as the linked list.
+    //Every used index has exactly LOOKUP_SIZE_2D contributions, so no per-index count is needed.
+    private static final int LOOKUP_SIZE_2D = 4;
+    static final float[] lookupDx2D = new float[64 * LOOKUP_SIZE_2D];
+    static final float[] lookupDy2D = new float[64 * LOOKUP_SIZE_2D];
+    static final int[] lookupXsb2D = new int[64 * LOOKUP_SIZE_2D];
+    static final int[] lookupYsb2D = new int[64 * LOOKUP_SIZE_2D];
+    private static final double[] lookupDxPrecise2D = new double[64 * LOOKUP_SIZE_2D];
+    private static final double[] lookupDyPrecise2D = new double[64 * LOOKUP_SIZE_2D];
+
+    //3D and 4D contributions in the same flattened form. Instead of a lookup by region the lattice
+    //vertices are grouped by the layer the point is in, floor(xins + yins + ...): the vertices of
+    //layer k are the ones at [latticeStart[k], latticeStart[k + 1]), every vertex that can be closer
+    //than the contribution radius to a point of that layer. Vertices further away contribute nothing.
+    private static int[] latticeStart3D;
+    private static float[] latticeDx3D, latticeDy3D, latticeDz3D;
+    private static int[] latticeXsb3D, latticeYsb3D, latticeZsb3D;
+
+    private static int[] latticeStart4D;
+    private static float[] latticeDx4D, latticeDy4D, latticeDz4D, latticeDw4D;
+    private static int[] latticeXsb4D, latticeYsb4D, latticeZsb4D, latticeWsb4D;
+
     static {
         int[][] base2D = new int[][]{
                 new int[]{1, 1, 0, 1, 0, 1, 0, 0, 0},
@@ -65,6 +153,122 @@ public class OpenSimplexNoise {
         for (int i = 0; i < lookupPairs2D.length; i += 2) {
             lookup2D[lookupPairs2D[i]] = contributions2D[lookupPairs2D[i + 1]];
         }
+
+        for (int h = 0; h < lookup2D.length; h++) {
+            int count = 0;
+            for (Contribution2 c = lookup2D[h]; c != null; c = c.Next) {
+                int index = h * LOOKUP_SIZE_2D + count++;
+                lookupDx2D[index] = c.dx;
+                lookupDxPrecise2D[index] = -c.xsb - (c.xsb + c.ysb) * SQUISH_2D_PRECISE;
+                lookupDyPrecise2D[index] = -c.ysb - (c.xsb + c.ysb) * SQUISH_2D_PRECISE;
+                lookupDy2D[index] = c.dy;
+                lookupXsb2D[index] = c.xsb;
+                lookupYsb2D[index] = c.ysb;
+            }
+            if (count != 0 && count != LOOKUP_SIZE_2D) {
+                throw new IllegalStateException("Unexpected number of 2D contributions: " + count);
+            }
+        }
+
+        latticeStart3D = new int[]{0, 16, 30, 46};
+        int[] lattice3D = new int[]{
+                //inSum in [0, 1)
+                -1, 0, 1, -1, 1, 0, 0, -1, 1, 0, 0, 0, 0, 1, -1, 1, -1, 0,
+                1, 0, -1, -1, 1, 1, 0, 0, 1, 0, 1, 0, 1, -1, 1, 1, 0, 0,
+                1, 1, -1, 0, 1, 1, 1, 0, 1, 1, 1, 0,
+                //inSum in [1, 2)
+                0, 0, 0, -1, 1, 1, 0, 0, 1, 0, 1, 0, 1, -1, 1, 1, 0, 0,
+                1, 1, -1, 0, 0, 2, 0, 1, 1, 0, 2, 0, 1, 0, 1, 1, 1, 0,
+                2, 0, 0, 1, 1, 1,
+                //inSum in [2, 3)
+                0, 0, 1, 0, 1, 0, 1, 0, 0, 0, 0, 2, 0, 1, 1, 0, 2, 0,
+                1, 0, 1, 1, 1, 0, 2, 0, 0, 0, 1, 2, 0, 2, 1, 1, 0, 2,
+                1, 1, 1, 1, 2, 0, 2, 0, 1, 2, 1, 0,
+        };
+
+        int vertices3D = lattice3D.length / 3;
+        latticeDx3D = new float[vertices3D];
+        latticeDy3D = new float[vertices3D];
+        latticeDz3D = new float[vertices3D];
+        latticeXsb3D = new int[vertices3D];
+        latticeYsb3D = new int[vertices3D];
+        latticeZsb3D = new int[vertices3D];
+        for (int i = 0; i < vertices3D; i++) {
+            int xsb = lattice3D[i * 3], ysb = lattice3D[i * 3 + 1], zsb = lattice3D[i * 3 + 2];
+            float squish = (xsb + ysb + zsb) * SQUISH_3D;
+            latticeDx3D[i] = -xsb - squish;
+            latticeDy3D[i] = -ysb - squish;
+            latticeDz3D[i] = -zsb - squish;
+            latticeXsb3D[i] = xsb;
+            latticeYsb3D[i] = ysb;
+            latticeZsb3D[i] = zsb;
+        }
+
+        latticeStart4D = new int[]{0, 35, 70, 105, 140};
+        int[] lattice4D = new int[]{
+                //inSum in [0, 1)
+                -1, 0, 0, 1, -1, 0, 1, 0, -1, 1, 0, 0, 0, -1, 0, 1,
+                0, -1, 1, 0, 0, 0, -1, 1, 0, 0, 0, 0, 0, 0, 1, -1,
+                0, 1, -1, 0, 0, 1, 0, -1, 1, -1, 0, 0, 1, 0, -1, 0,
+                1, 0, 0, -1, -1, 0, 1, 1, -1, 1, 0, 1, -1, 1, 1, 0,
+                0, -1, 1, 1, 0, 0, 0, 1, 0, 0, 1, 0, 0, 1, -1, 1,
+                0, 1, 0, 0, 0, 1, 1, -1, 1, -1, 0, 1, 1, -1, 1, 0,
+                1, 0, -1, 1, 1, 0, 0, 0, 1, 0, 1, -1, 1, 1, -1, 0,
+                1, 1, 0, -1, 0, 0, 1, 1, 0, 1, 0, 1, 0, 1, 1, 0,
+                1, 0, 0, 1, 1, 0, 1, 0, 1, 1, 0, 0,
+                //inSum in [1, 2)
+                0, 0, 0, 0, -1, 0, 1, 1, -1, 1, 0, 1, -1, 1, 1, 0,
+                0, -1, 1, 1, 0, 0, 0, 1, 0, 0, 1, 0, 0, 1, -1, 1,
+                0, 1, 0, 0, 0, 1, 1, -1, 1, -1, 0, 1, 1, -1, 1, 0,
+                1, 0, -1, 1, 1, 0, 0, 0, 1, 0, 1, -1, 1, 1, -1, 0,
+                1, 1, 0, -1, -1, 1, 1, 1, 0, 0, 0, 2, 0, 0, 1, 1,
+                0, 0, 2, 0, 0, 1, 0, 1, 0, 1, 1, 0, 0, 2, 0, 0,
+                1, -1, 1, 1, 1, 0, 0, 1, 1, 0, 1, 0, 1, 1, -1, 1,
+                1, 1, 0, 0, 1, 1, 1, -1, 2, 0, 0, 0, 0, 1, 1, 1,
+                1, 0, 1, 1, 1, 1, 0, 1, 1, 1, 1, 0,
+                //inSum in [2, 3)
+                0, 0, 0, 1, 0, 0, 1, 0, 0, 1, 0, 0, 1, 0, 0, 0,
+                -1, 1, 1, 1, 0, 0, 0, 2, 0, 0, 1, 1, 0, 0, 2, 0,
+                0, 1, 0, 1, 0, 1, 1, 0, 0, 2, 0, 0, 1, -1, 1, 1,
+                1, 0, 0, 1, 1, 0, 1, 0, 1, 1, -1, 1, 1, 1, 0, 0,
+                1, 1, 1, -1, 2, 0, 0, 0, 0, 0, 1, 2, 0, 0, 2, 1,
+                0, 1, 0, 2, 0, 1, 1, 1, 0, 1, 2, 0, 0, 2, 0, 1,
+                0, 2, 1, 0, 1, 0, 0, 2, 1, 0, 1, 1, 1, 0, 2, 0,
+                1, 1, 0, 1, 1, 1, 1, 0, 1, 2, 0, 0, 2, 0, 0, 1,
+                2, 0, 1, 0, 2, 1, 0, 0, 1, 1, 1, 1,
+                //inSum in [3, 4)
+                0, 0, 1, 1, 0, 1, 0, 1, 0, 1, 1, 0, 1, 0, 0, 1,
+                1, 0, 1, 0, 1, 1, 0, 0, 0, 0, 1, 2, 0, 0, 2, 1,
+                0, 1, 0, 2, 0, 1, 1, 1, 0, 1, 2, 0, 0, 2, 0, 1,
+                0, 2, 1, 0, 1, 0, 0, 2, 1, 0, 1, 1, 1, 0, 2, 0,
+                1, 1, 0, 1, 1, 1, 1, 0, 1, 2, 0, 0, 2, 0, 0, 1,
+                2, 0, 1, 0, 2, 1, 0, 0, 0, 1, 1, 2, 0, 1, 2, 1,
+                0, 2, 1, 1, 1, 0, 1, 2, 1, 0, 2, 1, 1, 1, 0, 2,
+                1, 1, 1, 1, 1, 1, 2, 0, 1, 2, 0, 1, 1, 2, 1, 0,
+                2, 0, 1, 1, 2, 1, 0, 1, 2, 1, 1, 0,
+        };
+
+        int vertices4D = lattice4D.length / 4;
+        latticeDx4D = new float[vertices4D];
+        latticeDy4D = new float[vertices4D];
+        latticeDz4D = new float[vertices4D];
+        latticeDw4D = new float[vertices4D];
+        latticeXsb4D = new int[vertices4D];
+        latticeYsb4D = new int[vertices4D];
+        latticeZsb4D = new int[vertices4D];
+        latticeWsb4D = new int[vertices4D];
+        for (int i = 0; i < vertices4D; i++) {
+            int xsb = lattice4D[i * 4], ysb = lattice4D[i * 4 + 1], zsb = lattice4D[i * 4 + 2], wsb = lattice4D[i * 4 + 3];
+            float squish = (xsb + ysb + zsb + wsb) * SQUISH_4D;
+            latticeDx4D[i] = -xsb - squish;
+            latticeDy4D[i] = -ysb - squish;
+            latticeDz4D[i] = -zsb - squish;
+            latticeDw4D[i] = -wsb - squish;
+            latticeXsb4D[i] = xsb;
+            latticeYsb4D[i] = ysb;
+            latticeZsb4D[i] = zsb;
+            latticeWsb4D[i] = wsb;
+        }
     }
 
     public OpenSimplexNoise() {
@@ -77,6 +281,7 @@ public class OpenSimplexNoise {
     public OpenSimplexNoise(long seed) {
         perm = new byte[256];
         perm2D = new byte[256];
+        permGradIndex3D = new byte[256];
 
         byte[] source = new byte[256];
 
@@ -95,17 +300,108 @@ public class OpenSimplexNoise {
             }
             perm[i] = source[r];
             perm2D[i] = perm2D[i] = (byte) (perm[i] & 0x0E);
+            permGradIndex3D[i] = (byte) (((perm[i] & 0xFF) % (gradients3D.length / 3)) * 3);
             source[r] = source[i];
         }
+
+        permXY = new byte[256 * 256];
+        for (int x = 0; x < 256; x++) {
+            int rotation = perm[x] & 0xFF;
+            System.arraycopy(perm, rotation, permXY, x << 8, 256 - rotation);
+            System.arraycopy(perm, 0, permXY, (x << 8) + 256 - rotation, rotation);
+        }
+
+        if (VECTOR_KERNEL != null) {
+            try {
+                rowKernel2D = (RowKernel2D) VECTOR_KERNEL.newInstance(perm, perm2D);
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException("Could not create the vector kernel", e);
+            }
+        } else {
+            rowKernel2D = null;
+        }
+    }
+
+    private static Constructor<?> findVectorKernel() {
+        if (!Boolean.parseBoolean(System.getProperty("opensimplex.vector", "true"))) {
+            return null;
+        }
+        try {
+            Class<?> kernel = Class.forName("terrainGeneration.OpenSimplexVectorKernel");
+            if (!(Boolean) kernel.getDeclaredMethod("isSupported").invoke(null)) {
+                return null;
+            }
+            return kernel.getDeclaredConstructor(byte[].class, byte[].class);
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return null;
+        }
+    }
+
+    //Whether the 2D rows with precomputed x coordinates run on the SIMD kernel.
+    public static boolean isVectorized() {
+        return VECTOR_KERNEL != null;
     }
 
     //2D OpenSimplex Noise.
+    //Evaluates the four contributions of the lookup index from the flattened tables, in the same
+    //order as the Contribution2 lists, so the result is identical to evalReference.
+    @Override
     public float eval(float x, float y) {
 
         float stretchOffset = (x + y) * STRETCH_2D;
         float xs = x + stretchOffset;
         float ys = y + stretchOffset;
 
+        int xsbi = MathUtils.fastFloor(xs);
+        int ysbi = MathUtils.fastFloor(ys);
+        float xsb = xsbi;
+        float ysb = ysbi;
+
+        float squishOffset = (xsb + ysb) * SQUISH_2D;
+        float dx0 = x - (xsb + squishOffset);
+        float dy0 = y - (ysb + squishOffset);
+
+        float xins = xs - xsb;
+        float yins = ys - ysb;
+
+        float inSum = xins + yins;
+
+        int hash =
+                (int) (xins - yins + 1) |
+                        (int) (inSum) << 1 |
+                        (int) (inSum + yins) << 2 |
+                        (int) (inSum + xins) << 4;
+
+        int c = hash * LOOKUP_SIZE_2D;
+
+        float value = 0.0f;
+        value = contribute2D(value, dx0 + lookupDx2D[c], dy0 + lookupDy2D[c], xsbi + lookupXsb2D[c], ysbi + lookupYsb2D[c]);
+        value = contribute2D(value, dx0 + lookupDx2D[c + 1], dy0 + lookupDy2D[c + 1], xsbi + lookupXsb2D[c + 1], ysbi + lookupYsb2D[c + 1]);
+        value = contribute2D(value, dx0 + lookupDx2D[c + 2], dy0 + lookupDy2D[c + 2], xsbi + lookupXsb2D[c + 2], ysbi + lookupYsb2D[c + 2]);
+        value = contribute2D(value, dx0 + lookupDx2D[c + 3], dy0 + lookupDy2D[c + 3], xsbi + lookupXsb2D[c + 3], ysbi + lookupYsb2D[c + 3]);
+
+        return value * NORM_2D / 1.732f * 2;
+    }
+
+    private float contribute2D(float value, float dx, float dy, int px, int py) {
+        float attn = 2 - dx * dx - dy * dy;
+        if (attn > 0) {
+            int i = permXY[(px << 8 | py & 0xFF) & 0xFFFF] & 0x0E;
+            float valuePart = gradients2D[i] * dx + gradients2D[i + 1] * dy;
+
+            attn *= attn;
+            value += attn * attn * valuePart;
+        }
+        return value;
+    }
+
+    //2D OpenSimplex Noise walking the Contribution2 lists, kept as the reference for eval.
+    public float evalReference(float x, float y) {
+
+        float stretchOffset = (x + y) * STRETCH_2D;
+        float xs = x + stretchOffset;
+        float ys = y + stretchOffset;
+
         float xsb = MathUtils.fastFloor(xs);
         float ysb = MathUtils.fastFloor(ys);
 
@@ -146,6 +442,249 @@ public class OpenSimplexNoise {
         return value * NORM_2D / 1.732f * 2;
     }
 
+    //2D OpenSimplex Noise for a scanline, out[offset + i] = eval(x0 + i * dx, y). The coordinates are laid out
+    //once in a per thread buffer and the row runs through the row kernel, on the SIMD kernel when available.
+    public void evalRow(float x0, float y, float dx, int count, float[] out, int offset) {
+        float[] xs = rowCoordinates(x0, dx, count);
+        evalRow(xs, 0, y, count, out, offset);
+    }
+
+    //2D OpenSimplex Noise for a scanline with precomputed x coordinates, out[offset + i] = eval(xs[xsOffset + i], y).
+    @Override
+    public void evalRow(float[] xs, int xsOffset, float y, int count, float[] out, int offset) {
+        int i = rowKernel2D == null ? 0 : rowKernel2D.evalRow(xs, xsOffset, y, count, out, offset);
+        for (; i < count; i++) {
+            out[offset + i] = eval(xs[xsOffset + i], y);
+        }
+    }
+
+    //2D OpenSimplex Noise for a grid, out[offset + j * stride + i] = eval(x0 + i * dx, y0 + j * dy). The x
+    //coordinates are the same for every row and only computed once.
+    public void evalGrid(float x0, float y0, float dx, float dy, int width, int height, float[] out, int offset, int stride) {
+        float[] xs = rowCoordinates(x0, dx, width);
+        for (int j = 0; j < height; j++) {
+            evalRow(xs, 0, y0 + j * dy, width, out, offset + j * stride);
+        }
+    }
+
+    //xs[i] = x0 + i * dx in the scratch buffer of this thread.
+    private static float[] rowCoordinates(float x0, float dx, int count) {
+        float[] xs = SCRATCH.floats(0, count);
+        for (int i = 0; i < count; i++) {
+            xs[i] = x0 + i * dx;
+        }
+        return xs;
+    }
+
+    //2D OpenSimplex Noise in double precision. The float path keeps about 7 significant digits, so
+    //coordinates in the hundred thousands only have a few fractional bits left and the noise
+    //turns into steps. Agrees with eval(float, float) near the origin.
+    @Override
+    public double eval(double x, double y) {
+
+        double stretchOffset = (x + y) * STRETCH_2D_PRECISE;
+        double xs = x + stretchOffset;
+        double ys = y + stretchOffset;
+
+        double xsb = Math.floor(xs);
+        double ysb = Math.floor(ys);
+
+        return evalLattice2D((long) xsb, (long) ysb, xs - xsb, ys - ysb);
+    }
+
+    //2D OpenSimplex Noise at (cellX + fx, cellY + fy). The cell never goes through a floating point
+    //number, only its stretch is split into whole lattice cells and a fraction, so the precision is
+    //the same at any distance from the origin. cellX + cellY has to fit into a long.
+    public double evalCell(long cellX, long cellY, double fx, double fy) {
+
+        //(cellX + cellY) * STRETCH in two halves whose products are exact with their fma error terms.
+        long cellSum = cellX + cellY;
+        double sumHigh = cellSum >> 32;
+        double sumLow = cellSum & 0xFFFFFFFFL;
+
+        double high = sumHigh * STRETCH_2D_PRECISE_HIGH;
+        double highError = Math.fma(sumHigh, STRETCH_2D_PRECISE_HIGH, -high);
+        double low = sumLow * STRETCH_2D_PRECISE;
+        double lowError = Math.fma(sumLow, STRETCH_2D_PRECISE, -low);
+
+        double highFloor = Math.floor(high);
+        double lowFloor = Math.floor(low);
+        long stretchCells = (long) highFloor + (long) lowFloor;
+        double stretchOffset = (high - highFloor) + (low - lowFloor) + highError + lowError + (fx + fy) * STRETCH_2D_PRECISE;
+
+        double xs = fx + stretchOffset;
+        double ys = fy + stretchOffset;
+
+        double xsb = Math.floor(xs);
+        double ysb = Math.floor(ys);
+
+        return evalLattice2D(cellX + stretchCells + (long) xsb, cellY + stretchCells + (long) ysb, xs - xsb, ys - ysb);
+    }
+
+    //The double precision kernel for a point at (xins, yins) inside the stretched cell (xsb, ysb).
+    //Only the low bits of the cell select gradients, so it may have wrapped around.
+    private double evalLattice2D(long xsb, long ysb, double xins, double yins) {
+
+        double squishOffset = (xins + yins) * SQUISH_2D_PRECISE;
+        double dx0 = xins + squishOffset;
+        double dy0 = yins + squishOffset;
+
+        double inSum = xins + yins;
+
+        int hash =
+                (int) (xins - yins + 1) |
+                        (int) (inSum) << 1 |
+                        (int) (inSum + yins) << 2 |
+                        (int) (inSum + xins) << 4;
+
+        int c = hash * LOOKUP_SIZE_2D;
+        int xsbi = (int) xsb;
+        int ysbi = (int) ysb;
+
+        double value = 0.0;
+        value = contribute2D(value, dx0 + lookupDxPrecise2D[c], dy0 + lookupDyPrecise2D[c], xsbi + lookupXsb2D[c], ysbi + lookupYsb2D[c]);
+        value = contribute2D(value, dx0 + lookupDxPrecise2D[c + 1], dy0 + lookupDyPrecise2D[c + 1], xsbi + lookupXsb2D[c + 1], ysbi + lookupYsb2D[c + 1]);
+        value = contribute2D(value, dx0 + lookupDxPrecise2D[c + 2], dy0 + lookupDyPrecise2D[c + 2], xsbi + lookupXsb2D[c + 2], ysbi + lookupYsb2D[c + 2]);
+        value = contribute2D(value, dx0 + lookupDxPrecise2D[c + 3], dy0 + lookupDyPrecise2D[c + 3], xsbi + lookupXsb2D[c + 3], ysbi + lookupYsb2D[c + 3]);
+
+        return value * NORM_2D / 1.732f * 2;
+    }
+
+    private double contribute2D(double value, double dx, double dy, int px, int py) {
+        double attn = 2 - dx * dx - dy * dy;
+        if (attn > 0) {
+            int i = permXY[(px << 8 | py & 0xFF) & 0xFFFF] & 0x0E;
+            double valuePart = gradients2D[i] * dx + gradients2D[i + 1] * dy;
+
+            attn *= attn;
+            value += attn * attn * valuePart;
+        }
+        return value;
+    }
+
+    //2D OpenSimplex Noise in double precision for a scanline, out[offset + i] = eval(xs[xsOffset + i], y).
+    @Override
+    public void evalRow(double[] xs, int xsOffset, double y, int count, float[] out, int offset) {
+        for (int i = 0; i < count; i++) {
+            out[offset + i] = (float) eval(xs[xsOffset + i], y);
+        }
+    }
+
+    //3D OpenSimplex Noise.
+    public float eval(float x, float y, float z) {
+
+        float stretchOffset = (x + y + z) * STRETCH_3D;
+        float xs = x + stretchOffset;
+        float ys = y + stretchOffset;
+        float zs = z + stretchOffset;
+
+        int xsbi = MathUtils.fastFloor(xs);
+        int ysbi = MathUtils.fastFloor(ys);
+        int zsbi = MathUtils.fastFloor(zs);
+        float xsb = xsbi;
+        float ysb = ysbi;
+        float zsb = zsbi;
+
+        float squishOffset = (xsb + ysb + zsb) * SQUISH_3D;
+        float dx0 = x - (xsb + squishOffset);
+        float dy0 = y - (ysb + squishOffset);
+        float dz0 = z - (zsb + squishOffset);
+
+        float inSum = (xs - xsb) + (ys - ysb) + (zs - zsb);
+        int layer = Math.min((int) inSum, 2);
+
+        float value = 0.0f;
+        for (int c = latticeStart3D[layer], end = latticeStart3D[layer + 1]; c < end; c++) {
+            float dx = dx0 + latticeDx3D[c];
+            float dy = dy0 + latticeDy3D[c];
+            float dz = dz0 + latticeDz3D[c];
+            float attn = 2 - dx * dx - dy * dy - dz * dz;
+            if (attn > 0) {
+                int px = xsbi + latticeXsb3D[c];
+                int py = ysbi + latticeYsb3D[c];
+                int pz = zsbi + latticeZsb3D[c];
+
+                int i = permGradIndex3D[(permXY[(px << 8 | py & 0xFF) & 0xFFFF] + pz) & 0xFF];
+                float valuePart = gradients3D[i] * dx + gradients3D[i + 1] * dy + gradients3D[i + 2] * dz;
+
+                attn *= attn;
+                value += attn * attn * valuePart;
+            }
+        }
+        return value * NORM_3D;
+    }
+
+    //3D OpenSimplex Noise for a scanline, out[offset + i] = eval(xs[xsOffset + i], y, z).
+    public void evalRow(float[] xs, int xsOffset, float y, float z, int count, float[] out, int offset) {
+        for (int i = 0; i < count; i++) {
+            out[offset + i] = eval(xs[xsOffset + i], y, z);
+        }
+    }
+
+    //4D OpenSimplex Noise.
+    public float eval(float x, float y, float z, float w) {
+
+        float stretchOffset = (x + y + z + w) * STRETCH_4D;
+        float xs = x + stretchOffset;
+        float ys = y + stretchOffset;
+        float zs = z + stretchOffset;
+        float ws = w + stretchOffset;
+
+        int xsbi = MathUtils.fastFloor(xs);
+        int ysbi = MathUtils.fastFloor(ys);
+        int zsbi = MathUtils.fastFloor(zs);
+        int wsbi = MathUtils.fastFloor(ws);
+        float xsb = xsbi;
+        float ysb = ysbi;
+        float zsb = zsbi;
+        float wsb = wsbi;
+
+        float squishOffset = (xsb + ysb + zsb + wsb) * SQUISH_4D;
+        float dx0 = x - (xsb + squishOffset);
+        float dy0 = y - (ysb + squishOffset);
+        float dz0 = z - (zsb + squishOffset);
+        float dw0 = w - (wsb + squishOffset);
+
+        float inSum = (xs - xsb) + (ys - ysb) + (zs - zsb) + (ws - wsb);
+        int layer = Math.min((int) inSum, 3);
+
+        float value = 0.0f;
+        for (int c = latticeStart4D[layer], end = latticeStart4D[layer + 1]; c < end; c++) {
+            float dx = dx0 + latticeDx4D[c];
+            float dy = dy0 + latticeDy4D[c];
+            float dz = dz0 + latticeDz4D[c];
+            float dw = dw0 + latticeDw4D[c];
+            float attn = 2 - dx * dx - dy * dy - dz * dz - dw * dw;
+            if (attn > 0) {
+                int px = xsbi + latticeXsb4D[c];
+                int py = ysbi + latticeYsb4D[c];
+                int pz = zsbi + latticeZsb4D[c];
+                int pw = wsbi + latticeWsb4D[c];
+
+                int i = perm[(perm[(permXY[(px << 8 | py & 0xFF) & 0xFFFF] + pz) & 0xFF] + pw) & 0xFF] & 0xFC;
+                float valuePart = gradients4D[i] * dx + gradients4D[i + 1] * dy + gradients4D[i + 2] * dz + gradients4D[i + 3] * dw;
+
+                attn *= attn;
+                value += attn * attn * valuePart;
+            }
+        }
+        return value * NORM_4D;
+    }
+
+    //4D OpenSimplex Noise for a scanline where the first two coordinates vary,
+    //out[offset + i] = eval(xs[xyOffset + i], ys[xyOffset + i], z, w). Sampling a circle in x, y
+    //and another in z, w gives noise that wraps around in both directions.
+    public void evalRow(float[] xs, float[] ys, int xyOffset, float z, float w, int count, float[] out, int offset) {
+        for (int i = 0; i < count; i++) {
+            out[offset + i] = eval(xs[xyOffset + i], ys[xyOffset + i], z, w);
+        }
+    }
+
+    //A 2D scanline kernel that fills out[offset, offset + n) for some n <= count and returns n.
+    interface RowKernel2D {
+        int evalRow(float[] xs, int xsOffset, float y, int count, float[] out, int offset);
+    }
+
     private static class Contribution2 {
         public float dx, dy;
         public int xsb, ysb;
@@ -0,0 +1,14 @@
+package terrainGeneration;
+
+/**
+ * Receives the progress of a {@link MapJob}. Events are published by a
+ * reporter thread at a fixed interval while the job runs, and a last time,
+ * with {@link GenerationProgress#done} set, by the thread that finishes the
+ * job before its result completes. A listener is never called concurrently
+ * and never slows down the workers.
+ */
+@FunctionalInterface
+public interface ProgressListener {
+
+    void progress(GenerationProgress progress);
+}
@@ -0,0 +1,55 @@
+package terrainGeneration;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Samples the progress counters of a running {@link MapJob} at a fixed
+ * interval on a single daemon thread shared by all jobs and hands the
+ * snapshots to the listener, so the workers only bump counters and never
+ * wait on a listener or on the console.
+ */
+final class ProgressReporter {
+
+    // How often a running job is sampled, -Dterrain.progressInterval=<ms> overrides it.
+    static final long INTERVAL_MILLIS = Long.getLong("terrain.progressInterval", 250);
+
+    private static final ScheduledExecutorService REPORTER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "progress-reporter");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final MapJob job;
+    private final ProgressListener listener;
+    private final ScheduledFuture<?> sampling;
+
+    private boolean stopped;
+
+    private ProgressReporter(MapJob job, ProgressListener listener) {
+        this.job = job;
+        this.listener = listener;
+        this.sampling = REPORTER.scheduleAtFixedRate(this::publish, INTERVAL_MILLIS, INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    static ProgressReporter watch(MapJob job, ProgressListener listener) {
+        return new ProgressReporter(job, listener);
+    }
+
+    private synchronized void publish() {
+        if (!stopped) {
+            listener.progress(job.progress());
+        }
+    }
+
+    // Stops sampling and publishes the last progress on the calling thread, only the first call has an effect.
+    synchronized void stop(GenerationProgress last) {
+        if (!stopped) {
+            stopped = true;
+            sampling.cancel(false);
+            listener.progress(last);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package terrainGeneration;
+
+import utils.MathUtils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes streamed rows to a file as headerless little-endian samples, row
+ * after row: float32 (.raw) or heights in [0, 1] quantized to uint16 (.r16),
+ * the raw formats terrain tools import. Only one row is buffered at a time.
+ */
+public class RawHeightWriter implements RowConsumer, Closeable {
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private final HeightMapFile.Format format;
+    private final int width;
+    private int nextRow;
+
+    public RawHeightWriter(Path path, int width) throws IOException {
+        this(path, width, HeightMapFile.Format.FLOAT32);
+    }
+
+    public RawHeightWriter(Path path, int width, HeightMapFile.Format format) throws IOException {
+        this.format = format;
+        this.width = width;
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        buffer = ByteBuffer.allocateDirect(width * format.bytes).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    // Writes a whole map, returns the number of bytes written.
+    public static long write(HeightMap noiseMap, Path path, HeightMapFile.Format format) throws IOException {
+        float[] row = new float[noiseMap.getWidth()];
+        try (RawHeightWriter writer = new RawHeightWriter(path, noiseMap.getWidth(), format)) {
+            for (int y = 0; y < noiseMap.getHeight(); y++) {
+                noiseMap.getRow(y, row, 0);
+                writer.accept(y, row);
+            }
+        }
+        return (long) noiseMap.getWidth() * noiseMap.getHeight() * format.bytes;
+    }
+
+    @Override
+    public void accept(int y, float[] row) {
+        if (y != nextRow) {
+            throw new IllegalStateException("Expected row " + nextRow + " but got " + y);
+        }
+        buffer.clear();
+        if (format == HeightMapFile.Format.FLOAT32) {
+            buffer.asFloatBuffer().put(row, 0, width);
+        } else {
+            for (int x = 0; x < width; x++) {
+                buffer.putShort(x * 2, (short) Math.round(MathUtils.clamp(row[x], 0, 1) * 65535));
+            }
+        }
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        nextRow++;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
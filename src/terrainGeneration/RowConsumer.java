@@ -0,0 +1,15 @@
+package terrainGeneration;
+
+/**
+ * Receives the rows of a streamed height map in order, top to bottom.
+ */
+@FunctionalInterface
+public interface RowConsumer {
+
+    /**
+     * @param y   the index of the row
+     * @param row the normalized heights of the row, the buffer is reused for
+     *            the next row and has to be copied if it is kept
+     */
+    void accept(int y, float[] row);
+}
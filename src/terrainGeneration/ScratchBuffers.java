@@ -0,0 +1,45 @@
+package terrainGeneration;
+
+/**
+ * Per thread scratch arrays for the batch methods of shared noise sources,
+ * grown on demand and reused, so batches do not allocate once warmed up.
+ */
+final class ScratchBuffers {
+
+    private final int count;
+    private final ThreadLocal<float[][]> floats;
+    private final ThreadLocal<double[][]> doubles;
+    private final ThreadLocal<int[][]> ints;
+
+    ScratchBuffers(int count) {
+        this.count = count;
+        this.floats = ThreadLocal.withInitial(() -> new float[this.count][0]);
+        this.doubles = ThreadLocal.withInitial(() -> new double[this.count][0]);
+        this.ints = ThreadLocal.withInitial(() -> new int[this.count][0]);
+    }
+
+    // Scratch array number index of this thread with at least size elements.
+    float[] floats(int index, int size) {
+        float[][] buffers = floats.get();
+        if (buffers[index].length < size) {
+            buffers[index] = new float[size];
+        }
+        return buffers[index];
+    }
+
+    double[] doubles(int index, int size) {
+        double[][] buffers = doubles.get();
+        if (buffers[index].length < size) {
+            buffers[index] = new double[size];
+        }
+        return buffers[index];
+    }
+
+    int[] ints(int index, int size) {
+        int[][] buffers = ints.get();
+        if (buffers[index].length < size) {
+            buffers[index] = new int[size];
+        }
+        return buffers[index];
+    }
+}
@@ -3,97 +3,511 @@ package terrainGeneration;
 import utils.Console;
 import utils.ConsoleUtils;
 import utils.MathUtils;
+import utils.Metrics;
 
-import java.util.Random;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 public class TerrainNoise {
 
-    public static float[][] generateNoiseMap(int mapWidth, int mapHeight, int seed, float scale, int octaves, float persistance, float lacunarity, Vector offset) {
-        Console.log("Generating NoiseMap [ " + mapWidth + " | " + mapHeight + " ] Scale: " + scale);
-        Console.log("Octaves: " + octaves + " ");
+    // The pools of generateNoiseMap with a thread count, by thread count.
+    private static final Map<Integer, ForkJoinPool> POOLS = new ConcurrentHashMap<>();
 
-        float[][] noiseMap = new float[mapWidth][mapHeight];
+    // Wall time of whole maps, the core time of their row bands and of their normalization, and tiles.
+    private static final Metrics.Stage GENERATE = Metrics.stage("generate");
+    private static final Metrics.Stage SAMPLE = Metrics.stage("generate.sample");
+    private static final Metrics.Stage NORMALIZE = Metrics.stage("generate.normalize");
+    private static final Metrics.Stage REGION = Metrics.stage("generate.region");
 
-        OpenSimplexNoise noise = new OpenSimplexNoise(seed);
+    // -Dterrain.quiet=true turns the progress bar of the synchronous generators off, their rows are not counted then.
+    static final boolean QUIET = Boolean.getBoolean("terrain.quiet");
 
-        Random prng = new Random(seed);
-        Vector[] octaveOffsets = new Vector[octaves];
+    // Prints a progress bar, the synchronous generators report through it.
+    static final ProgressListener CONSOLE_PROGRESS = progress -> {
+        ConsoleUtils.printProgress(progress.percent());
+        if (progress.done) {
+            System.out.println();
+        }
+    };
+
+    public static HeightMap generateNoiseMap(int mapWidth, int mapHeight, int seed, float scale, int octaves, float persistance, float lacunarity, Vector offset) {
+        return generateNoiseMap(mapWidth, mapHeight, seed, scale, octaves, persistance, lacunarity, offset, 1);
+    }
 
-        for (int i = 0; i < octaves; i++) {
-            float offsetX = prng.nextInt(200001) - 100000 + offset.get(0);
-            float offsetY = prng.nextInt(200001) - 100000 + offset.get(1);
-            octaveOffsets[i] = new Vector(offsetX, offsetY);
+    // Splits the map into row bands and generates them on a pool with the given number of threads. The pools are
+    // kept for later calls, one per thread count, their threads are daemons that end when idle.
+    // The result is bit-identical to the serial path for the same seed.
+    public static HeightMap generateNoiseMap(int mapWidth, int mapHeight, int seed, float scale, int octaves, float persistance, float lacunarity, Vector offset, int threads) {
+        if (threads <= 1) {
+            return generateNoiseMap(mapWidth, mapHeight, seed, scale, octaves, persistance, lacunarity, offset, null, 1);
         }
 
-//        scale = scale * (mapWidth / 100 - 0f);
+        ForkJoinPool pool = POOLS.computeIfAbsent(threads, ForkJoinPool::new);
+        return generateNoiseMap(mapWidth, mapHeight, seed, scale, octaves, persistance, lacunarity, offset, pool, threads * 4);
+    }
 
+    // Generates the map in the given number of row bands on a caller supplied executor.
+    // A null executor runs every band on the calling thread.
+    public static HeightMap generateNoiseMap(int mapWidth, int mapHeight, int seed, float scale, int octaves, float persistance, float lacunarity, Vector offset,
+                                             ExecutorService executor, int bands) {
+        HeightMap noiseMap = new HeightMap(mapWidth, mapHeight);
+        generateNoiseMap(noiseMap, new NoiseSettings(seed, scale, octaves, persistance, lacunarity, offset), executor, bands);
+        return noiseMap;
+    }
 
-        if (scale <= 0) {
-            scale = 0.0001f;
-        }
+    // Generates into an existing map, overwriting all of its heights, so the buffer can be reused between maps.
+    public static void generateNoiseMap(HeightMap noiseMap, NoiseSettings settings, ExecutorService executor, int bands) {
+        generateNoiseMap(noiseMap, new FractalNoise(settings), settings, executor, bands);
+    }
 
-        float maxNoiseHeight = Float.MIN_VALUE;
-        float minNoiseHeight = Float.MAX_VALUE;
+    // Generates the map from any source, centered on the origin and sampled at pixel / scale of the settings.
+    public static void generateNoiseMap(HeightMap noiseMap, NoiseSource source, NoiseSettings settings, ExecutorService executor, int bands) {
+        await(generateAsync(noiseMap, source, settings, executor, bands, QUIET ? null : CONSOLE_PROGRESS));
+        Console.log("    Done");
+    }
 
-        float max = Float.MIN_VALUE;
-        float min = Float.MAX_VALUE;
+    // Starts generating the map in the given number of row bands on the executor and returns without waiting for
+    // it, a null executor generates the whole map on the calling thread before returning. The job completes with
+    // the same map generateNoiseMap produces.
+    public static MapJob generateAsync(HeightMap noiseMap, NoiseSource source, NoiseSettings settings, Executor executor, int bands,
+                                       ProgressListener listener) {
+        int mapWidth = noiseMap.getWidth();
+        int mapHeight = noiseMap.getHeight();
 
-        float halfWidth = mapWidth / 2f;
-        float halfHeight = mapHeight / 2f;
+        Console.log("Generating NoiseMap [ " + mapWidth + " | " + mapHeight + " ] Scale: " + settings.scale);
+        Console.log("Octaves: " + settings.octaves + " ");
 
-        Console.log("Generating");
+        float[] heights = noiseMap.data();
 
-        for (int y = 0; y < mapHeight; y++) {
-            for (int x = 0; x < mapWidth; x++) {
+        NoiseSampler sampler = new NoiseSampler(source, settings, -mapWidth / 2f, -mapHeight / 2f, mapWidth);
 
-                float amplitude = 1;
-                float frequency = 1;
+        bands = Math.max(1, Math.min(bands, mapHeight));
+        int bandHeight = (mapHeight + bands - 1) / bands;
 
-                float noiseHeight = 0;
+        MapJob job = MapJob.start(mapHeight, (long) mapWidth * mapHeight, listener);
+        Metrics.Timer timer = GENERATE.start();
 
-                for (int i = 0; i < octaves; i++) {
-                    float sampleX = ((x - halfWidth) / scale * frequency) + octaveOffsets[i].get(0);
-                    float sampleY = ((y - halfHeight) / scale * frequency) + octaveOffsets[i].get(1);
+        List<Callable<NoiseRange>> generateTasks = new ArrayList<>();
+        for (int startY = 0; startY < mapHeight; startY += bandHeight) {
+            int fromY = startY;
+            int toY = Math.min(startY + bandHeight, mapHeight);
+            generateTasks.add(() -> {
+                Metrics.Timer bandTimer = SAMPLE.start();
+                NoiseRange range = new NoiseRange();
 
-                    float perlinValue = noise.eval(sampleX, sampleY);
-//                    perlinValue = perlinValue / 1.732f * 2;
+                for (int y = fromY; y < toY; y++) {
+                    job.checkCancelled();
 
-                    if (perlinValue > max) {
-                        max = perlinValue;
-                    } else if (perlinValue < min) {
-                        min = perlinValue;
-                    }
+                    int row = noiseMap.index(0, y);
+                    sampler.fillRow(y, heights, row);
 
-                    noiseHeight += perlinValue * amplitude;
+                    for (int x = 0; x < mapWidth; x++) {
+                        range.include(heights[row + x]);
+                    }
 
-                    amplitude *= persistance;
-                    frequency *= lacunarity;
+                    job.rowDone(mapWidth);
                 }
 
-                if (noiseHeight > maxNoiseHeight) {
-                    maxNoiseHeight = noiseHeight;
-                } else if (noiseHeight < minNoiseHeight) {
-                    minNoiseHeight = noiseHeight;
+                bandTimer.stop((long) (toY - fromY) * mapWidth);
+                return range;
+            });
+        }
+
+        runAllAsync(generateTasks, executor)
+                .thenCompose(bandRanges -> {
+                    NoiseRange range = new NoiseRange();
+                    for (NoiseRange bandRange : bandRanges) {
+                        range.include(bandRange);
+                    }
+
+                    Console.log("Min: " + range.getMin());
+                    Console.log("Max: " + range.getMax());
+
+                    return runAllAsync(normalizeTasks(noiseMap, range, bandHeight), executor);
+                })
+                .whenComplete((normalized, failure) -> finish(job, noiseMap, failure, timer));
+
+        return job;
+    }
+
+    // Generates the map coarse to fine and waits for it, see generateProgressiveAsync.
+    public static void generateProgressive(HeightMap noiseMap, NoiseSource source, NoiseSettings settings, ExecutorService executor, int bands,
+                                           int coarsestStep, LevelListener listener) {
+        await(generateProgressiveAsync(noiseMap, source, settings, executor, bands, coarsestStep, listener, null));
+    }
+
+    // Generates the map coarse to fine, starting with every coarsestStep-th row and column and halving the step down
+    // to the full resolution. Samples of coarser levels are kept, each level only computes the pixels that are new
+    // on its grid, so the whole map costs the same as generateNoiseMap. Every level is handed to the level listener
+    // by the thread that finished it, normalized with the range of the samples computed so far, so the final level
+    // equals the map generateNoiseMap produces.
+    public static MapJob generateProgressiveAsync(HeightMap noiseMap, NoiseSource source, NoiseSettings settings, Executor executor, int bands,
+                                                  int coarsestStep, LevelListener levelListener, ProgressListener listener) {
+        Console.log("Generating NoiseMap [ " + noiseMap.getWidth() + " | " + noiseMap.getHeight() + " ] progressively from 1/" + coarsestStep);
+
+        if (coarsestStep < 1 || Integer.bitCount(coarsestStep) != 1) {
+            throw new IllegalArgumentException("The coarsest step has to be a power of two but was " + coarsestStep);
+        }
+
+        int mapWidth = noiseMap.getWidth();
+        int mapHeight = noiseMap.getHeight();
+
+        int totalRows = 0;
+        for (int step = coarsestStep; step >= 1; step /= 2) {
+            totalRows += (mapHeight + step - 1) / step;
+        }
+        MapJob job = MapJob.start(totalRows, (long) mapWidth * mapHeight, listener);
+        Metrics.Timer timer = GENERATE.start();
+
+        NoiseRange range = new NoiseRange();
+
+        CompletableFuture<Void> levels = CompletableFuture.completedFuture(null);
+        for (int step = coarsestStep; step >= 1; step /= 2) {
+            int levelStep = step;
+            levels = levels
+                    .thenCompose(previous -> runAllAsync(levelTasks(noiseMap, source, settings, bands, levelStep, coarsestStep, job), executor))
+                    .thenAccept(bandRanges -> {
+                        for (NoiseRange bandRange : bandRanges) {
+                            range.include(bandRange);
+                        }
+                        Console.log("Level 1/" + levelStep + " done, range " + range);
+
+                        if (levelStep > 1) {
+                            job.checkCancelled();
+                            levelListener.levelDone(levelStep, levelPreview(noiseMap, levelStep, range));
+                        }
+                    });
+        }
+
+        int normalizeBands = Math.max(1, Math.min(bands, mapHeight));
+        int bandHeight = (mapHeight + normalizeBands - 1) / normalizeBands;
+
+        levels.thenCompose(done -> runAllAsync(normalizeTasks(noiseMap, range, bandHeight), executor))
+                .thenRun(() -> {
+                    job.checkCancelled();
+                    levelListener.levelDone(1, noiseMap);
+                })
+                .whenComplete((done, failure) -> finish(job, noiseMap, failure, timer));
+
+        return job;
+    }
+
+    // The bands of one level of generateProgressive, each returns the range of the samples it computed.
+    private static List<Callable<NoiseRange>> levelTasks(HeightMap noiseMap, NoiseSource source, NoiseSettings settings, int bands,
+                                                         int step, int coarsestStep, MapJob job) {
+        int mapWidth = noiseMap.getWidth();
+        int mapHeight = noiseMap.getHeight();
+        float[] heights = noiseMap.data();
+
+        int rows = (mapHeight + step - 1) / step;
+
+        // Rows that were part of the coarser level already have their even columns.
+        NoiseSampler allColumns = new NoiseSampler(source, settings, -mapWidth / 2f, -mapHeight / 2f, (mapWidth + step - 1) / step, step);
+        NoiseSampler newColumns = step == coarsestStep ? null
+                : new NoiseSampler(source, settings, -mapWidth / 2f + step, -mapHeight / 2f, (mapWidth + step - 1) / (2 * step), 2 * step);
+
+        int levelBands = Math.max(1, Math.min(bands, rows));
+        int bandRows = (rows + levelBands - 1) / levelBands;
+
+        List<Callable<NoiseRange>> tasks = new ArrayList<>();
+        for (int startRow = 0; startRow < rows; startRow += bandRows) {
+            int fromRow = startRow;
+            int toRow = Math.min(startRow + bandRows, rows);
+            tasks.add(() -> {
+                Metrics.Timer bandTimer = SAMPLE.start();
+                NoiseRange bandRange = new NoiseRange();
+                float[] samples = new float[allColumns.getWidth()];
+                long sampled = 0;
+
+                for (int r = fromRow; r < toRow; r++) {
+                    job.checkCancelled();
+
+                    int y = r * step;
+                    boolean coarseRow = newColumns != null && y % (2 * step) == 0;
+                    NoiseSampler sampler = coarseRow ? newColumns : allColumns;
+                    int firstX = coarseRow ? step : 0;
+                    int columnStep = coarseRow ? 2 * step : step;
+
+                    sampler.fillRow(y, samples, 0);
+
+                    int row = noiseMap.index(0, y);
+                    for (int i = 0; i < sampler.getWidth(); i++) {
+                        float value = samples[i];
+                        heights[row + firstX + i * columnStep] = value;
+                        bandRange.include(value);
+                    }
+
+                    job.rowDone(sampler.getWidth());
+                    sampled += sampler.getWidth();
                 }
 
-                noiseMap[x][y] = noiseHeight;
+                bandTimer.stop(sampled);
+                return bandRange;
+            });
+        }
+        return tasks;
+    }
+
+    // Every step-th row and column of the raw map, normalized with the given range.
+    private static HeightMap levelPreview(HeightMap noiseMap, int step, NoiseRange range) {
+        HeightMap level = new HeightMap((noiseMap.getWidth() + step - 1) / step, (noiseMap.getHeight() + step - 1) / step);
+        for (int y = 0; y < level.getHeight(); y++) {
+            for (int x = 0; x < level.getWidth(); x++) {
+                level.set(x, y, noiseMap.get(x * step, y * step));
             }
+        }
+        level.normalize(range.getMin(), range.getMax());
+        return level;
+    }
 
-            ConsoleUtils.printProgress(Math.round((1.0f * y / mapHeight) * 100));
+    private static List<Callable<Void>> normalizeTasks(HeightMap noiseMap, NoiseRange range, int bandHeight) {
+        float minNoiseHeight = range.getMin();
+        float maxNoiseHeight = range.getMax();
+
+        List<Callable<Void>> normalizeTasks = new ArrayList<>();
+        for (int startY = 0; startY < noiseMap.getHeight(); startY += bandHeight) {
+            int fromY = startY;
+            int toY = Math.min(startY + bandHeight, noiseMap.getHeight());
+            normalizeTasks.add(() -> {
+                Metrics.Timer bandTimer = NORMALIZE.start();
+                noiseMap.normalize(minNoiseHeight, maxNoiseHeight, fromY, toY);
+                bandTimer.stop((long) (toY - fromY) * noiseMap.getWidth());
+                return null;
+            });
         }
-        System.out.println();
+        return normalizeTasks;
+    }
 
-        Console.log("Min: " + minNoiseHeight);
-        Console.log("Max: " + maxNoiseHeight);
+    // Only completed maps count towards the generate stage.
+    private static void finish(MapJob job, HeightMap noiseMap, Throwable failure, Metrics.Timer timer) {
+        if (failure == null) {
+            timer.stop((long) noiseMap.getWidth() * noiseMap.getHeight());
+            job.complete(noiseMap);
+        } else {
+            job.fail(failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure);
+        }
+    }
+
+    // Waits for the job and rethrows its failure the way runAll does, a cancelled job throws CancellationException.
+    private static HeightMap await(MapJob job) {
+        try {
+            return job.result().join();
+        } catch (CompletionException e) {
+            throw new IllegalStateException("Noise generation failed", e.getCause());
+        }
+    }
 
-        for (int y = 0; y < mapHeight; y++) {
-            for (int x = 0; x < mapWidth; x++) {
-                noiseMap[x][y] = MathUtils.inverseLerp(minNoiseHeight, maxNoiseHeight, noiseMap[x][y]);
+    // Generates the region whose top left pixel is (originX, originY) in world pixels, normalized with the
+    // range of the source. Regions generated separately join up without seams. The origin is a double so worlds
+    // can reach beyond the int range, it should be a whole number for regions to line up.
+    public static HeightMap generateRegion(NoiseSource source, NoiseSettings settings, double originX, double originY, int width, int height) {
+        return generateRegion(source, settings, originX, originY, width, height, 1);
+    }
+
+    // Like generateRegion, but pixel (x, y) of the region is world pixel (originX + x * step, originY + y * step), a
+    // region at a lower level of detail covering step times the width and height.
+    public static HeightMap generateRegion(NoiseSource source, NoiseSettings settings, double originX, double originY, int width, int height, int step) {
+        Metrics.Timer timer = REGION.start();
+        HeightMap region = new HeightMap(width, height);
+        float[] heights = region.data();
+
+        NoiseSampler sampler = new NoiseSampler(source, settings, originX, originY, width, step);
+        for (int y = 0; y < height; y++) {
+            sampler.fillRow(y * step, heights, region.index(0, y));
+        }
+
+        NoiseRange range = source.range();
+        region.normalize(range.getMin(), range.getMax());
+        timer.stop((long) width * height);
+        return region;
+    }
+
+    // Generates the frame at the given time of an animated map, the slice at depth time of 3D noise, into an
+    // existing map. Normalized with the range of the settings so consecutive frames can be streamed one at a time.
+    public static void generateFrame(HeightMap frame, OpenSimplexNoise noise, NoiseSettings settings, float time) {
+        generateFrame(frame, new FractalNoise(noise, FractalNoise.Mode.FBM, settings), settings, time);
+    }
+
+    // Like generateFrame with the octaves of the fractal, which has to sample an OpenSimplexNoise, normalized with the
+    // range of the fractal.
+    public static void generateFrame(HeightMap frame, FractalNoise fractal, NoiseSettings settings, float time) {
+        int width = frame.getWidth();
+        int height = frame.getHeight();
+        float[] heights = frame.data();
+
+        float scale = settings.scale <= 0 ? 0.0001f : settings.scale;
+
+        float[] xs = new float[width];
+        for (int x = 0; x < width; x++) {
+            xs[x] = (x - width / 2f) / scale;
+        }
+
+        for (int y = 0; y < height; y++) {
+            fractal.evalRow3D(xs, 0, (y - height / 2f) / scale, time / scale, width, heights, frame.index(0, y));
+        }
+
+        NoiseRange range = fractal.range();
+        frame.normalize(range.getMin(), range.getMax());
+    }
+
+    // Generates a map that wraps around horizontally and vertically. Each axis is mapped onto a circle in two
+    // dimensions of 4D noise, so the left edge continues the right one and the top edge the bottom one.
+    public static HeightMap generateSeamlessRegion(OpenSimplexNoise noise, NoiseSettings settings, int width, int height) {
+        return generateSeamlessRegion(new FractalNoise(noise, FractalNoise.Mode.FBM, settings), settings, width, height);
+    }
+
+    // Like generateSeamlessRegion with the octaves of the fractal, which has to sample an OpenSimplexNoise, normalized
+    // with the range of the fractal.
+    public static HeightMap generateSeamlessRegion(FractalNoise fractal, NoiseSettings settings, int width, int height) {
+        HeightMap region = new HeightMap(width, height);
+        float[] heights = region.data();
+
+        float scale = settings.scale <= 0 ? 0.0001f : settings.scale;
+
+        // Circles with the circumference of the map keep the features the same size as on a flat map.
+        float radiusX = (float) (width / (2 * Math.PI)) / scale;
+        float radiusY = (float) (height / (2 * Math.PI)) / scale;
+
+        float[] circleX = new float[width];
+        float[] circleY = new float[width];
+        for (int x = 0; x < width; x++) {
+            double angle = 2 * Math.PI * x / width;
+            circleX[x] = (float) Math.cos(angle) * radiusX;
+            circleY[x] = (float) Math.sin(angle) * radiusX;
+        }
+
+        for (int y = 0; y < height; y++) {
+            double angle = 2 * Math.PI * y / height;
+            float z = (float) Math.cos(angle) * radiusY;
+            float w = (float) Math.sin(angle) * radiusY;
+            fractal.evalRow4D(circleX, circleY, 0, z, w, width, heights, region.index(0, y));
+        }
+
+        NoiseRange range = fractal.range();
+        region.normalize(range.getMin(), range.getMax());
+        return region;
+    }
+
+    // Estimates the range of a map from every step-th row and column, a fraction 1 / (step * step) of the work.
+    // Heights between the sampled ones can fall slightly outside of the estimate.
+    public static NoiseRange sampleRange(int mapWidth, int mapHeight, NoiseSettings settings, int step) {
+        int columns = (mapWidth + step - 1) / step;
+        float[] row = new float[columns];
+
+        NoiseSampler sampler = new NoiseSampler(new FractalNoise(settings), settings, -mapWidth / 2f, -mapHeight / 2f, columns, step);
+
+        NoiseRange range = new NoiseRange();
+        for (int y = 0; y < mapHeight; y += step) {
+            sampler.fillRow(y, row, 0);
+            for (int x = 0; x < columns; x++) {
+                range.include(row[x]);
             }
         }
+        return range;
+    }
 
-        Console.log("    Done");
+    // Streams the normalized rows of the same map generateNoiseMap would produce to the consumer, top to bottom.
+    // The range is known up front, either NoiseSettings.fixedRange or sampleRange, so only one row is held at a time.
+    // Heights outside of the range are clamped.
+    public static void streamNoiseMap(int mapWidth, int mapHeight, NoiseSettings settings, NoiseRange range, RowConsumer consumer) {
+        streamNoiseMap(mapWidth, mapHeight, settings, range, consumer, null, 1);
+    }
 
-        return noiseMap;
+    // Generates windowRows rows at a time on the executor and hands them to the consumer in order on the calling thread.
+    public static void streamNoiseMap(int mapWidth, int mapHeight, NoiseSettings settings, NoiseRange range, RowConsumer consumer,
+                                      ExecutorService executor, int windowRows) {
+        windowRows = Math.max(1, Math.min(windowRows, mapHeight));
+
+        NoiseSampler sampler = new NoiseSampler(new FractalNoise(settings), settings, -mapWidth / 2f, -mapHeight / 2f, mapWidth);
+
+        float min = range.getMin();
+        float max = range.getMax();
+
+        float[] window = new float[windowRows * mapWidth];
+        float[] row = new float[mapWidth];
+
+        for (int startY = 0; startY < mapHeight; startY += windowRows) {
+            int rows = Math.min(windowRows, mapHeight - startY);
+
+            List<Callable<Void>> tasks = new ArrayList<>(rows);
+            for (int i = 0; i < rows; i++) {
+                int slot = i;
+                int y = startY + i;
+                tasks.add(() -> {
+                    sampler.fillRow(y, window, slot * mapWidth);
+                    return null;
+                });
+            }
+            runAll(tasks, executor);
+
+            for (int i = 0; i < rows; i++) {
+                int start = i * mapWidth;
+                for (int x = 0; x < mapWidth; x++) {
+                    row[x] = MathUtils.clamp(MathUtils.inverseLerp(min, max, window[start + x]), 0, 1);
+                }
+                consumer.accept(startY + i, row);
+            }
+        }
+    }
+
+    // Runs the tasks on the executor, or on the calling thread if there is none, without waiting for them. Completes
+    // with their results in order once all of them are done, or with the failure of one of them.
+    static <T> CompletableFuture<List<T>> runAllAsync(List<Callable<T>> tasks, Executor executor) {
+        Executor runner = executor == null ? Runnable::run : executor;
+
+        List<CompletableFuture<T>> futures = new ArrayList<>(tasks.size());
+        for (Callable<T> task : tasks) {
+            futures.add(CompletableFuture.supplyAsync(() -> {
+                try {
+                    return task.call();
+                } catch (RuntimeException e) {
+                    throw e;
+                } catch (Exception e) {
+                    throw new CompletionException(e);
+                }
+            }, runner));
+        }
+
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).thenApply(done -> {
+            List<T> results = new ArrayList<>(futures.size());
+            for (CompletableFuture<T> future : futures) {
+                results.add(future.join());
+            }
+            return results;
+        });
+    }
+
+    // Runs the tasks on the executor, or on the calling thread if there is none, and returns their results in order.
+    static <T> List<T> runAll(List<Callable<T>> tasks, ExecutorService executor) {
+        List<T> results = new ArrayList<>(tasks.size());
+        try {
+            if (executor == null) {
+                for (Callable<T> task : tasks) {
+                    results.add(task.call());
+                }
+            } else {
+                for (Future<T> future : executor.invokeAll(tasks)) {
+                    results.add(future.get());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Noise generation was interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Noise generation failed", e.getCause());
+        } catch (Exception e) {
+            throw new IllegalStateException("Noise generation failed", e);
+        }
+        return results;
     }
 }
@@ -0,0 +1,372 @@
+package terrainGeneration;
+
+import utils.Console;
+import utils.Metrics;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Renders a {@link HeightMapFile} on {@link TileWorker}s in other JVMs or on
+ * other machines. The map is split into square tiles that the workers take
+ * from a shared queue, as many at a time as they have threads, so faster
+ * workers render more of them. The workers sample the raw heights of the
+ * same pixels {@link TerrainNoise#generateNoiseMap} samples, centered on
+ * the origin at -width / 2, -height / 2, and the coordinator normalizes the
+ * whole file with their minimum and maximum once every tile is in, so the
+ * file holds the same map as a local render. A tile only depends on the
+ * settings and its position: the map is the same whichever worker rendered
+ * which tile, and a tile whose worker failed is rendered again by another
+ * one, up to {@value #MAX_ATTEMPTS} times.
+ */
+public final class TileCoordinator {
+
+    public static final int MAX_ATTEMPTS = 3;
+
+    // How long a worker may take for a tile before it counts as failed, -Dterrain.workerTimeout=<seconds>.
+    private static final int TIMEOUT_MILLIS = Integer.getInteger("terrain.workerTimeout", 300) * 1000;
+
+    private static final Metrics.Stage RENDER = Metrics.stage("distributed.render");
+
+    private final List<InetSocketAddress> workers;
+    private final int tileSize;
+
+    public TileCoordinator(List<InetSocketAddress> workers, int tileSize) {
+        if (workers.isEmpty()) {
+            throw new IllegalArgumentException("No workers");
+        }
+        if (tileSize <= 0 || tileSize > TileProtocol.MAX_TILE_SIZE) {
+            throw new IllegalArgumentException("Tile size has to be in 1.." + TileProtocol.MAX_TILE_SIZE + " but was " + tileSize);
+        }
+        this.workers = List.copyOf(workers);
+        this.tileSize = tileSize;
+    }
+
+    // Parses "host:port,host:port".
+    public static List<InetSocketAddress> parseWorkers(String workers) {
+        List<InetSocketAddress> addresses = new ArrayList<>();
+        for (String worker : workers.split(",")) {
+            int separator = worker.lastIndexOf(':');
+            if (separator <= 0) {
+                throw new IllegalArgumentException("Expected host:port but got " + worker);
+            }
+            addresses.add(new InetSocketAddress(worker.substring(0, separator), Integer.parseInt(worker.substring(separator + 1))));
+        }
+        return addresses;
+    }
+
+    /**
+     * What one worker contributed to a map.
+     */
+    public static final class WorkerStats {
+
+        private final String worker;
+        private final LongAdder tiles = new LongAdder();
+        private final LongAdder samples = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private final LongAccumulator nanos = new LongAccumulator(Math::max, 0);
+        private volatile int connections;
+        private volatile long startNanos;
+
+        private WorkerStats(String worker) {
+            this.worker = worker;
+        }
+
+        public String getWorker() {
+            return worker;
+        }
+
+        public int getConnections() {
+            return connections;
+        }
+
+        public long getTiles() {
+            return tiles.sum();
+        }
+
+        public long getSamples() {
+            return samples.sum();
+        }
+
+        public long getFailures() {
+            return failures.sum();
+        }
+
+        // Samples per second from the first request to the last answer of the worker.
+        public double getSamplesPerSecond() {
+            long elapsed = nanos.get();
+            return elapsed == 0 ? 0 : getSamples() * 1e9 / elapsed;
+        }
+
+        @Override
+        public String toString() {
+            return worker + " Connections: " + connections + " Tiles: " + getTiles() + " Failures: " + getFailures()
+                    + " Samples/s: " + Math.round(getSamplesPerSecond());
+        }
+    }
+
+    private static final class Tile {
+
+        final int x;
+        final int y;
+        final int width;
+        final int height;
+        int attempts;
+
+        Tile(int x, int y, int width, int height) {
+            this.x = x;
+            this.y = y;
+            this.width = width;
+            this.height = height;
+        }
+    }
+
+    // Renders the whole map the header of the file describes, settings, fractal mode and warp, into the file, which
+    // has to be writable, and returns what every worker did.
+    public List<WorkerStats> render(HeightMapFile file) throws IOException {
+        int width = file.getWidth();
+        int height = file.getHeight();
+        Console.log("Distributing NoiseMap [ " + width + " | " + height + " ] in tiles of " + tileSize + " to " + workers.size() + " workers");
+        Metrics.Timer timer = RENDER.start();
+
+        LinkedBlockingDeque<Tile> queue = new LinkedBlockingDeque<>();
+        for (int y = 0; y < height; y += tileSize) {
+            for (int x = 0; x < width; x += tileSize) {
+                queue.add(new Tile(x, y, Math.min(tileSize, width - x), Math.min(tileSize, height - y)));
+            }
+        }
+        Run run = new Run(file, queue);
+
+        List<WorkerStats> stats = new ArrayList<>();
+        ExecutorService pool = Executors.newCachedThreadPool();
+        try {
+            List<Future<?>> tasks = new ArrayList<>();
+            for (InetSocketAddress worker : workers) {
+                WorkerStats workerStats = new WorkerStats(worker.getHostString() + ":" + worker.getPort());
+                stats.add(workerStats);
+                tasks.add(pool.submit(() -> {
+                    run.connect(worker, workerStats, pool);
+                    return null;
+                }));
+            }
+            for (Future<?> task : tasks) {
+                task.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            run.fail(new IOException("Interrupted while rendering", e));
+        } catch (ExecutionException e) {
+            run.fail(new IOException("Rendering on a worker failed", e.getCause()));
+        } finally {
+            pool.shutdownNow();
+        }
+
+        if (run.failure.get() != null) {
+            throw run.failure.get();
+        }
+        if (run.remaining.get() > 0) {
+            throw new IOException(run.remaining.get() + " tiles left but no worker is reachable");
+        }
+        normalize(file, run.range);
+        file.flush();
+        timer.stop((long) width * height);
+
+        for (WorkerStats workerStats : stats) {
+            Console.log(workerStats);
+            Metrics.counter("distributed." + workerStats.worker + ".samples").add(workerStats.getSamples());
+            Metrics.counter("distributed." + workerStats.worker + ".failures").add(workerStats.getFailures());
+        }
+        return stats;
+    }
+
+    // Normalizes the raw heights of the file like generateNoiseMap, in bands of tile rows.
+    private void normalize(HeightMapFile file, NoiseRange range) throws IOException {
+        Console.log("Min: " + range.getMin());
+        Console.log("Max: " + range.getMax());
+
+        int width = file.getWidth();
+        HeightMap band = null;
+        for (int y = 0; y < file.getHeight(); y += tileSize) {
+            int rows = Math.min(tileSize, file.getHeight() - y);
+            if (band == null || band.getHeight() != rows) {
+                band = new HeightMap(width, rows);
+            }
+            file.readRegion(0, y, band);
+            band.normalize(range.getMin(), range.getMax());
+            file.writeRegion(0, y, band);
+        }
+    }
+
+    // The state of one render shared by all connections.
+    private final class Run {
+
+        private final HeightMapFile file;
+        private final LinkedBlockingDeque<Tile> queue;
+
+        private final AtomicInteger remaining;
+        private final AtomicReference<IOException> failure = new AtomicReference<>();
+        // Of the raw heights of all tiles written so far, guarded by itself.
+        private final NoiseRange range = new NoiseRange();
+
+        Run(HeightMapFile file, LinkedBlockingDeque<Tile> queue) {
+            this.file = file;
+            this.queue = queue;
+            this.remaining = new AtomicInteger(queue.size());
+        }
+
+        // Renders tiles on as many connections to the worker as it has threads and returns once all of them are
+        // done. A worker that cannot be reached renders nothing.
+        void connect(InetSocketAddress worker, WorkerStats stats, ExecutorService pool) throws InterruptedException, ExecutionException {
+            Socket first;
+            int threads;
+            try {
+                first = open(worker);
+                threads = new DataInputStream(first.getInputStream()).readInt();
+            } catch (IOException e) {
+                Console.log("Worker " + stats.worker + " unavailable: " + e);
+                stats.failures.increment();
+                return;
+            }
+            stats.connections = threads;
+            stats.startNanos = System.nanoTime();
+
+            List<Future<?>> others = new ArrayList<>();
+            for (int i = 1; i < threads; i++) {
+                others.add(pool.submit(() -> {
+                    Socket socket;
+                    try {
+                        socket = open(worker);
+                        new DataInputStream(socket.getInputStream()).readInt();
+                    } catch (IOException e) {
+                        Console.log("Connection to " + stats.worker + " failed: " + e);
+                        stats.failures.increment();
+                        return;
+                    }
+                    work(socket, stats);
+                }));
+            }
+            work(first, stats);
+            for (Future<?> other : others) {
+                other.get();
+            }
+        }
+
+        void fail(IOException e) {
+            failure.compareAndSet(null, e);
+        }
+
+        // Connects and exchanges the greeting, the worker's thread count is left to read.
+        private Socket open(InetSocketAddress worker) throws IOException {
+            Socket socket = new Socket();
+            try {
+                socket.connect(worker, TIMEOUT_MILLIS);
+                socket.setSoTimeout(TIMEOUT_MILLIS);
+                socket.setTcpNoDelay(true);
+                DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+                out.writeInt(TileProtocol.MAGIC);
+                out.writeInt(TileProtocol.VERSION);
+                out.flush();
+                DataInputStream in = new DataInputStream(socket.getInputStream());
+                if (in.readInt() != TileProtocol.MAGIC || in.readInt() != TileProtocol.VERSION) {
+                    throw new IOException(worker + " is not a tile worker of version " + TileProtocol.VERSION);
+                }
+                return socket;
+            } catch (IOException e) {
+                socket.close();
+                throw e;
+            }
+        }
+
+        // Sends tiles over the connection until none are left. A tile that fails goes back to the queue for any
+        // connection, a connection that fails is closed.
+        private void work(Socket socket, WorkerStats stats) {
+            Metrics.Stage stage = Metrics.stage("distributed." + stats.worker);
+            ByteBuffer heights = null;
+            try (Socket connection = socket) {
+                DataInputStream in = new DataInputStream(new BufferedInputStream(connection.getInputStream(), 1 << 16));
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(connection.getOutputStream()));
+
+                while (failure.get() == null && remaining.get() > 0) {
+                    // Tiles in flight on other connections may still come back.
+                    Tile tile = queue.poll(100, TimeUnit.MILLISECONDS);
+                    if (tile == null) {
+                        continue;
+                    }
+
+                    Metrics.Timer timer = stage.start();
+                    try {
+                        TileProtocol.writeRequest(out, new TileProtocol.Request(file.getSettings(), file.getMode(), file.getWarp(),
+                                tile.x - file.getWidth() / 2.0, tile.y - file.getHeight() / 2.0, tile.width, tile.height));
+                        out.flush();
+
+                        if (in.readByte() != TileProtocol.OK) {
+                            retry(tile, stats, "Worker " + stats.worker + ": " + in.readUTF());
+                            continue;
+                        }
+                        int bytes = tile.width * tile.height * Float.BYTES;
+                        if (heights == null || heights.capacity() < bytes) {
+                            heights = ByteBuffer.allocate(bytes);
+                        }
+                        in.readFully(heights.array(), 0, bytes);
+                    } catch (IOException e) {
+                        retry(tile, stats, "Connection to " + stats.worker + " failed: " + e);
+                        return;
+                    }
+
+                    heights.clear();
+                    HeightMap map = new HeightMap(tile.width, tile.height);
+                    TileProtocol.getHeights(heights, map);
+                    file.writeRegion(tile.x, tile.y, map);
+                    NoiseRange tileRange = new NoiseRange();
+                    for (float value : map.data()) {
+                        tileRange.include(value);
+                    }
+                    synchronized (range) {
+                        range.include(tileRange);
+                    }
+                    timer.stop((long) tile.width * tile.height);
+
+                    stats.tiles.increment();
+                    stats.samples.add((long) tile.width * tile.height);
+                    stats.nanos.accumulate(System.nanoTime() - stats.startNanos);
+                    remaining.decrementAndGet();
+                }
+
+                out.writeByte(TileProtocol.CLOSE);
+                out.flush();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (IOException e) {
+                fail(e);
+            }
+        }
+
+        private void retry(Tile tile, WorkerStats stats, String reason) {
+            Console.log(reason);
+            stats.failures.increment();
+            if (++tile.attempts >= MAX_ATTEMPTS) {
+                fail(new IOException("Tile at " + tile.x + "," + tile.y + " failed " + tile.attempts + " times, last: " + reason));
+            } else {
+                queue.addFirst(tile);
+            }
+        }
+    }
+}
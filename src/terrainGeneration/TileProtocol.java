@@ -0,0 +1,138 @@
+package terrainGeneration;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+
+/**
+ * The binary protocol between a {@link TileCoordinator} and its
+ * {@link TileWorker}s, big-endian throughout.
+ * <p>
+ * The coordinator opens a connection with MAGIC and VERSION, the worker
+ * answers with both and the number of connections it serves in parallel.
+ * Then every request is a TILE byte followed by the settings, fractal mode,
+ * warp strength and the region of the tile, answered by OK and the
+ * width x height raw heights row by row, before any normalization, or ERROR
+ * and a message.
+ * Every request carries everything the tile depends on, so workers keep no
+ * state and any tile can be sent to any worker again. CLOSE ends the
+ * connection.
+ */
+final class TileProtocol {
+
+    static final int MAGIC = 0x54494C45; // "TILE"
+    static final int VERSION = 2;
+
+    static final byte CLOSE = 0;
+    static final byte TILE = 1;
+
+    static final byte OK = 0;
+    static final byte ERROR = 1;
+
+    // The largest tile side, a tile of it is 256 MB of heights, a worker holds two of them per connection.
+    static final int MAX_TILE_SIZE = 8192;
+
+    private TileProtocol() {
+    }
+
+    /**
+     * The map a tile belongs to and the world pixels it covers, pixel (x, y)
+     * of the tile is world pixel (originX + x, originY + y).
+     */
+    static final class Request {
+
+        final NoiseSettings settings;
+        final FractalNoise.Mode mode;
+        final float warp;
+        final double originX;
+        final double originY;
+        final int width;
+        final int height;
+
+        Request(NoiseSettings settings, FractalNoise.Mode mode, float warp, double originX, double originY, int width, int height) {
+            this.settings = settings;
+            this.mode = mode;
+            this.warp = warp;
+            this.originX = originX;
+            this.originY = originY;
+            this.width = width;
+            this.height = height;
+        }
+
+        // The same source BatchRenderer samples for these parameters.
+        NoiseSource source() {
+            NoiseSource source = new FractalNoise(NoiseCache.shared().get(settings.seed), mode, settings);
+            if (warp > 0) {
+                source = new DomainWarp(source, NoiseCache.shared().get(settings.seed + 1), warp);
+            }
+            return source;
+        }
+
+        // The raw heights of the tile, sampled like the same pixels of TerrainNoise.generateNoiseMap.
+        HeightMap render() {
+            HeightMap tile = new HeightMap(width, height);
+            NoiseSampler sampler = new NoiseSampler(source(), settings, originX, originY, width);
+            for (int y = 0; y < height; y++) {
+                sampler.fillRow(y, tile.data(), tile.index(0, y));
+            }
+            return tile;
+        }
+    }
+
+    static void writeRequest(DataOutputStream out, Request request) throws IOException {
+        NoiseSettings settings = request.settings;
+        out.writeByte(TILE);
+        out.writeInt(settings.seed);
+        out.writeFloat(settings.scale);
+        out.writeInt(settings.octaves);
+        out.writeFloat(settings.persistance);
+        out.writeFloat(settings.lacunarity);
+        out.writeFloat(settings.offsetX);
+        out.writeFloat(settings.offsetY);
+        out.writeBoolean(settings.precise);
+        out.writeByte(request.mode.ordinal());
+        out.writeFloat(request.warp);
+        out.writeDouble(request.originX);
+        out.writeDouble(request.originY);
+        out.writeInt(request.width);
+        out.writeInt(request.height);
+    }
+
+    // Reads the request that follows a TILE byte.
+    static Request readRequest(DataInputStream in) throws IOException {
+        NoiseSettings settings = new NoiseSettings(in.readInt(), in.readFloat(), in.readInt(), in.readFloat(), in.readFloat(),
+                in.readFloat(), in.readFloat(), in.readBoolean());
+        int mode = in.readUnsignedByte();
+        if (mode >= FractalNoise.Mode.values().length) {
+            throw new IOException("Unknown fractal mode " + mode);
+        }
+        Request request = new Request(settings, FractalNoise.Mode.values()[mode], in.readFloat(), in.readDouble(), in.readDouble(), in.readInt(), in.readInt());
+        if (request.width <= 0 || request.height <= 0 || request.width > MAX_TILE_SIZE || request.height > MAX_TILE_SIZE) {
+            throw new IOException("Invalid tile size " + request.width + "x" + request.height);
+        }
+        if (!Double.isFinite(request.originX) || !Double.isFinite(request.originY)) {
+            throw new IOException("Invalid tile origin " + request.originX + "," + request.originY);
+        }
+        return request;
+    }
+
+    // Writes the heights of the map row by row into the buffer, which must hold all of them.
+    static void putHeights(HeightMap map, ByteBuffer buffer) {
+        buffer.clear();
+        FloatBuffer floats = buffer.asFloatBuffer();
+        for (int y = 0; y < map.getHeight(); y++) {
+            floats.put(map.data(), map.index(0, y), map.getWidth());
+        }
+        buffer.limit(map.getWidth() * map.getHeight() * Float.BYTES);
+    }
+
+    // Fills the map with the heights putHeights wrote into the buffer.
+    static void getHeights(ByteBuffer buffer, HeightMap map) {
+        FloatBuffer floats = buffer.asFloatBuffer();
+        for (int y = 0; y < map.getHeight(); y++) {
+            floats.get(map.data(), map.index(0, y), map.getWidth());
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package terrainGeneration;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Produces fixed-size tiles of an unbounded world by integer tile coordinate.
+ * Tile (tileX, tileY) covers the world pixels starting at
+ * (tileX * tileSize, tileY * tileSize). Tiles are normalized with the
+ * fixed range of the noise source, so neighbouring tiles join up without
+ * seams.
+ * <p>
+ * Generated tiles are kept in a least recently used cache of bounded size.
+ * Concurrent requests for a tile that is still being generated wait for that
+ * generation instead of starting another one. Returned tiles are shared and
+ * must not be modified.
+ */
+public class TileProvider {
+
+    private final NoiseSettings settings;
+    private final NoiseSource source;
+    private final int tileSize;
+    private final int maxTiles;
+
+    private final LinkedHashMap<Long, CompletableFuture<HeightMap>> tiles;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public TileProvider(NoiseSettings settings, int tileSize, int maxTiles) {
+        this(settings, new FractalNoise(settings), tileSize, maxTiles);
+    }
+
+    // Tiles of any source, sampled at world pixel / scale of the settings.
+    public TileProvider(NoiseSettings settings, NoiseSource source, int tileSize, int maxTiles) {
+        if (tileSize <= 0 || maxTiles <= 0) {
+            throw new IllegalArgumentException("Tile size and cache size must be positive");
+        }
+        this.settings = settings;
+        this.source = source;
+        this.tileSize = tileSize;
+        this.maxTiles = maxTiles;
+
+        this.tiles = new LinkedHashMap<Long, CompletableFuture<HeightMap>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, CompletableFuture<HeightMap>> eldest) {
+                if (size() > TileProvider.this.maxTiles) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    // A provider that keeps as many tiles as fit into the given number of bytes.
+    public static TileProvider withMemoryBudget(NoiseSettings settings, int tileSize, long maxBytes) {
+        long tileBytes = (long) tileSize * tileSize * Float.BYTES;
+        return new TileProvider(settings, tileSize, (int) Math.max(1, Math.min(Integer.MAX_VALUE, maxBytes / tileBytes)));
+    }
+
+    public HeightMap getTile(int tileX, int tileY) {
+        Long key = key(tileX, tileY);
+
+        CompletableFuture<HeightMap> tile;
+        boolean generate = false;
+        synchronized (tiles) {
+            tile = tiles.get(key);
+            if (tile == null) {
+                tile = new CompletableFuture<>();
+                tiles.put(key, tile);
+                generate = true;
+            }
+        }
+
+        if (!generate) {
+            hits.increment();
+            try {
+                return tile.join();
+            } catch (CompletionException e) {
+                throw new IllegalStateException("Generating tile " + tileX + "," + tileY + " failed", e.getCause());
+            }
+        }
+
+        misses.increment();
+        try {
+            // In double, far tiles are beyond the int range of world pixels.
+            HeightMap map = TerrainNoise.generateRegion(source, settings, (double) tileX * tileSize, (double) tileY * tileSize, tileSize, tileSize);
+            tile.complete(map);
+            return map;
+        } catch (RuntimeException e) {
+            synchronized (tiles) {
+                tiles.remove(key, tile);
+            }
+            tile.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    private static long key(int tileX, int tileY) {
+        return ((long) tileX << 32) | (tileY & 0xFFFFFFFFL);
+    }
+
+    public void clear() {
+        synchronized (tiles) {
+            tiles.clear();
+        }
+    }
+
+    public NoiseSettings getSettings() {
+        return settings;
+    }
+
+    public int getTileSize() {
+        return tileSize;
+    }
+
+    public int getMaxTiles() {
+        return maxTiles;
+    }
+
+    public int getCachedTiles() {
+        synchronized (tiles) {
+            return tiles.size();
+        }
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    public float getHitRate() {
+        long hits = getHits();
+        long total = hits + getMisses();
+        return total == 0 ? 0 : (float) hits / total;
+    }
+
+    @Override
+    public String toString() {
+        return "Tiles: " + getCachedTiles() + "/" + maxTiles + " Hits: " + getHits() + " Misses: " + getMisses()
+                + " Evictions: " + getEvictions();
+    }
+}
@@ -0,0 +1,159 @@
+package terrainGeneration;
+
+import utils.Console;
+import utils.Metrics;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Renders tiles for a {@link TileCoordinator} on a socket, see
+ * {@link TileProtocol}. Every connection is served by its own thread one
+ * tile at a time, the coordinator opens as many connections as the worker
+ * announces threads. Connections beyond {@value #CONNECTIONS_PER_THREAD}
+ * per thread are closed right away, which bounds the memory of the tiles in
+ * flight. The worker has no authentication, it listens on the loopback
+ * interface unless given another address.
+ */
+public final class TileWorker implements Closeable {
+
+    // Room for a few coordinators at a time.
+    public static final int CONNECTIONS_PER_THREAD = 4;
+
+    private static final Metrics.Stage TILE = Metrics.stage("worker.tile");
+
+    private final ServerSocket server;
+    private final int threads;
+    private final ExecutorService connections;
+    private final Semaphore open;
+
+    private TileWorker(ServerSocket server, int threads) {
+        this.server = server;
+        this.threads = threads;
+        this.open = new Semaphore(threads * CONNECTIONS_PER_THREAD);
+
+        AtomicInteger count = new AtomicInteger();
+        this.connections = Executors.newCachedThreadPool(task -> {
+            Thread thread = new Thread(task, "worker-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // Listens on the port of the loopback interface, 0 picks a free one, and serves the given number of tiles at a time.
+    public static TileWorker start(int port, int threads) throws IOException {
+        return start(InetAddress.getLoopbackAddress(), port, threads);
+    }
+
+    // Listens on the port of the given address, the wildcard address listens on every interface.
+    public static TileWorker start(InetAddress address, int port, int threads) throws IOException {
+        TileWorker worker = new TileWorker(new ServerSocket(port, 50, address), Math.max(1, threads));
+        Thread acceptor = new Thread(worker::accept, "worker-accept");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        Console.log("Tile worker listening on " + address.getHostAddress() + ":" + worker.getPort() + " with " + worker.threads + " threads");
+        return worker;
+    }
+
+    public int getPort() {
+        return server.getLocalPort();
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    @Override
+    public void close() throws IOException {
+        server.close();
+        connections.shutdownNow();
+    }
+
+    private void accept() {
+        while (!server.isClosed()) {
+            try {
+                Socket socket = server.accept();
+                if (!open.tryAcquire()) {
+                    Console.log("Refused " + socket.getRemoteSocketAddress() + ", " + threads * CONNECTIONS_PER_THREAD + " connections are open");
+                    socket.close();
+                    continue;
+                }
+                connections.execute(() -> {
+                    try {
+                        serve(socket);
+                    } finally {
+                        open.release();
+                    }
+                });
+            } catch (IOException e) {
+                if (!server.isClosed()) {
+                    Console.log("Accepting a connection failed: " + e);
+                }
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        String peer = String.valueOf(socket.getRemoteSocketAddress());
+        try (Socket connection = socket) {
+            connection.setTcpNoDelay(true);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(connection.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(connection.getOutputStream(), 1 << 16));
+
+            if (in.readInt() != TileProtocol.MAGIC || in.readInt() != TileProtocol.VERSION) {
+                Console.log("Rejected " + peer + ", not a tile coordinator of version " + TileProtocol.VERSION);
+                return;
+            }
+            out.writeInt(TileProtocol.MAGIC);
+            out.writeInt(TileProtocol.VERSION);
+            out.writeInt(threads);
+            out.flush();
+
+            // Reused for every tile of the connection.
+            ByteBuffer heights = null;
+            while (in.readByte() == TileProtocol.TILE) {
+                TileProtocol.Request request = TileProtocol.readRequest(in);
+
+                HeightMap tile;
+                try {
+                    Metrics.Timer timer = TILE.start();
+                    tile = request.render();
+                    timer.stop((long) request.width * request.height);
+                } catch (RuntimeException e) {
+                    Console.log("Tile at " + request.originX + "," + request.originY + " failed: " + e);
+                    out.writeByte(TileProtocol.ERROR);
+                    out.writeUTF(String.valueOf(e));
+                    out.flush();
+                    continue;
+                }
+
+                int bytes = request.width * request.height * Float.BYTES;
+                if (heights == null || heights.capacity() < bytes) {
+                    heights = ByteBuffer.allocate(bytes);
+                }
+                TileProtocol.putHeights(tile, heights);
+                out.writeByte(TileProtocol.OK);
+                out.write(heights.array(), 0, bytes);
+                out.flush();
+            }
+        } catch (EOFException | SocketException e) {
+            // The coordinator went away, it retries the tile elsewhere.
+        } catch (IOException e) {
+            Console.log("Connection from " + peer + " failed: " + e);
+        }
+    }
+}
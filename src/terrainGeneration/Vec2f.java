@@ -0,0 +1,92 @@
+package terrainGeneration;
+
+/**
+ * A mutable two dimensional float vector for code that runs per sample or
+ * per step, where {@link Vector} would allocate an array and an object for
+ * every operation. The arithmetic writes into a given vector, which may be
+ * this one or the argument, and returns it, so a few vectors can be reused
+ * for a whole loop. Not thread-safe, every thread keeps its own.
+ */
+public final class Vec2f {
+
+    public float x;
+    public float y;
+
+    public Vec2f() {
+    }
+
+    public Vec2f(float x, float y) {
+        this.x = x;
+        this.y = y;
+    }
+
+    public Vec2f(Vec2f v) {
+        this(v.x, v.y);
+    }
+
+    // The first two elements of the vector.
+    public Vec2f(Vector v) {
+        this(v.get(0), v.get(1));
+    }
+
+    public Vec2f set(float x, float y) {
+        this.x = x;
+        this.y = y;
+        return this;
+    }
+
+    public Vec2f set(Vec2f v) {
+        return set(v.x, v.y);
+    }
+
+    // this + v into the given vector.
+    public Vec2f add(Vec2f v, Vec2f into) {
+        return into.set(x + v.x, y + v.y);
+    }
+
+    // this - v into the given vector.
+    public Vec2f subtract(Vec2f v, Vec2f into) {
+        return into.set(x - v.x, y - v.y);
+    }
+
+    // this * s into the given vector.
+    public Vec2f multiply(float s, Vec2f into) {
+        return into.set(x * s, y * s);
+    }
+
+    // this + v * s into the given vector, without a temporary for the product.
+    public Vec2f addScaled(Vec2f v, float s, Vec2f into) {
+        return into.set(x + v.x * s, y + v.y * s);
+    }
+
+    public Vec2f floor(Vec2f into) {
+        return into.set((float) Math.floor(x), (float) Math.floor(y));
+    }
+
+    // The unit vector of this one into the given vector, zero stays zero.
+    public Vec2f unitize(Vec2f into) {
+        float magnitude = magnitude();
+        return magnitude == 0 ? into.set(0, 0) : multiply(1 / magnitude, into);
+    }
+
+    public float dot(Vec2f v) {
+        return x * v.x + y * v.y;
+    }
+
+    public float magnitudeSquared() {
+        return x * x + y * y;
+    }
+
+    public float magnitude() {
+        return (float) Math.sqrt(x * x + y * y);
+    }
+
+    public Vector toVector() {
+        return new Vector(x, y);
+    }
+
+    @Override
+    public String toString() {
+        return "[" + x + " " + y + "]";
+    }
+}
@@ -0,0 +1,97 @@
+package terrainGeneration;
+
+/**
+ * The three dimensional counterpart of {@link Vec2f}, mutable, with the
+ * arithmetic writing into a given vector. Not thread-safe.
+ */
+public final class Vec3f {
+
+    public float x;
+    public float y;
+    public float z;
+
+    public Vec3f() {
+    }
+
+    public Vec3f(float x, float y, float z) {
+        this.x = x;
+        this.y = y;
+        this.z = z;
+    }
+
+    public Vec3f(Vec3f v) {
+        this(v.x, v.y, v.z);
+    }
+
+    // The first three elements of the vector.
+    public Vec3f(Vector v) {
+        this(v.get(0), v.get(1), v.get(2));
+    }
+
+    public Vec3f set(float x, float y, float z) {
+        this.x = x;
+        this.y = y;
+        this.z = z;
+        return this;
+    }
+
+    public Vec3f set(Vec3f v) {
+        return set(v.x, v.y, v.z);
+    }
+
+    // this + v into the given vector.
+    public Vec3f add(Vec3f v, Vec3f into) {
+        return into.set(x + v.x, y + v.y, z + v.z);
+    }
+
+    // this - v into the given vector.
+    public Vec3f subtract(Vec3f v, Vec3f into) {
+        return into.set(x - v.x, y - v.y, z - v.z);
+    }
+
+    // this * s into the given vector.
+    public Vec3f multiply(float s, Vec3f into) {
+        return into.set(x * s, y * s, z * s);
+    }
+
+    // this + v * s into the given vector, without a temporary for the product.
+    public Vec3f addScaled(Vec3f v, float s, Vec3f into) {
+        return into.set(x + v.x * s, y + v.y * s, z + v.z * s);
+    }
+
+    // this x v into the given vector, which may be either operand.
+    public Vec3f cross(Vec3f v, Vec3f into) {
+        return into.set(y * v.z - z * v.y, z * v.x - x * v.z, x * v.y - y * v.x);
+    }
+
+    public Vec3f floor(Vec3f into) {
+        return into.set((float) Math.floor(x), (float) Math.floor(y), (float) Math.floor(z));
+    }
+
+    // The unit vector of this one into the given vector, zero stays zero.
+    public Vec3f unitize(Vec3f into) {
+        float magnitude = magnitude();
+        return magnitude == 0 ? into.set(0, 0, 0) : multiply(1 / magnitude, into);
+    }
+
+    public float dot(Vec3f v) {
+        return x * v.x + y * v.y + z * v.z;
+    }
+
+    public float magnitudeSquared() {
+        return x * x + y * y + z * z;
+    }
+
+    public float magnitude() {
+        return (float) Math.sqrt(x * x + y * y + z * z);
+    }
+
+    public Vector toVector() {
+        return new Vector(x, y, z);
+    }
+
+    @Override
+    public String toString() {
+        return "[" + x + " " + y + " " + z + "]";
+    }
+}
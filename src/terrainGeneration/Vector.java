@@ -4,7 +4,8 @@ import java.io.Serializable;
 
 /**
  * Represents a vector or point of arbitrary dimension. This class is
- * immutable and therefore thread-safe.
+ * immutable and therefore thread-safe. Every operation allocates a new
+ * vector, code that runs per sample uses {@link Vec2f} and {@link Vec3f}.
  */
 @SuppressWarnings("serial")
 public final class Vector implements Serializable, Cloneable {
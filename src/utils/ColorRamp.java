@@ -0,0 +1,139 @@
+package utils;
+
+import java.awt.*;
+import java.util.Arrays;
+
+/**
+ * A precomputed palette that maps heights in [0, 1] to packed RGB colors.
+ * Looking up a color is a multiply and an array read, no objects are
+ * created per pixel. Immutable and therefore thread-safe.
+ */
+public final class ColorRamp {
+
+    public static final int DEFAULT_SIZE = 4096;
+
+    private final int[] palette;
+    private final float maxIndex;
+
+    private ColorRamp(int[] palette) {
+        this.palette = palette;
+        this.maxIndex = palette.length - 1;
+    }
+
+    // Blends linearly from one color to the other.
+    public static ColorRamp gradient(Color from, Color to) {
+        return gradient(new float[]{0, 1}, new Color[]{from, to}, DEFAULT_SIZE);
+    }
+
+    // Blends linearly between colors placed at ascending positions in [0, 1].
+    public static ColorRamp gradient(float[] positions, Color[] colors, int size) {
+        check(positions, colors, size);
+        int[] palette = new int[size];
+        int stop = 0;
+        for (int i = 0; i < size; i++) {
+            float value = i / (size - 1f);
+            while (stop < positions.length - 1 && value > positions[stop + 1]) {
+                stop++;
+            }
+
+            Color color;
+            if (value <= positions[0]) {
+                color = colors[0];
+            } else if (stop == positions.length - 1) {
+                color = colors[stop];
+            } else {
+                color = ColorUtils.lerp(colors[stop], colors[stop + 1], MathUtils.inverseLerp(positions[stop], positions[stop + 1], value));
+            }
+            palette[i] = color.getRGB();
+        }
+        return new ColorRamp(palette);
+    }
+
+    // Uses colors[i] for heights below limits[i], and the last color above the last limit.
+    public static ColorRamp steps(float[] limits, Color[] colors, int size) {
+        if (colors.length != limits.length + 1) {
+            throw new IllegalArgumentException("Expected " + (limits.length + 1) + " colors for " + limits.length + " limits");
+        }
+        if (size < 2) {
+            throw new IllegalArgumentException("A ramp needs at least two entries");
+        }
+        int[] palette = new int[size];
+        for (int i = 0; i < size; i++) {
+            float value = i / (size - 1f);
+            int step = 0;
+            while (step < limits.length && value >= limits[step]) {
+                step++;
+            }
+            palette[i] = colors[step].getRGB();
+        }
+        return new ColorRamp(palette);
+    }
+
+    // Water, sand, grass, rock and snow bands.
+    public static ColorRamp terrain() {
+        return steps(
+                new float[]{0.20f, 0.30f, 0.45f, 0.51f, 0.62f, 0.79f, 0.92f},
+                new Color[]{
+                        Color.blue.darker(),
+                        Color.blue,
+                        Color.blue.brighter(),
+                        Color.yellow,
+                        Color.green.darker(),
+                        Color.green.darker().darker(),
+                        Color.gray,
+                        Color.white
+                },
+                DEFAULT_SIZE);
+    }
+
+    private static void check(float[] positions, Color[] colors, int size) {
+        if (positions.length == 0 || positions.length != colors.length) {
+            throw new IllegalArgumentException("Expected one color per position");
+        }
+        for (int i = 1; i < positions.length; i++) {
+            if (positions[i] < positions[i - 1]) {
+                throw new IllegalArgumentException("Positions have to be ascending");
+            }
+        }
+        if (size < 2) {
+            throw new IllegalArgumentException("A ramp needs at least two entries");
+        }
+    }
+
+    public int size() {
+        return palette.length;
+    }
+
+    // The packed RGB color of a height, heights outside of [0, 1] are clamped.
+    public int color(float value) {
+        int index = (int) (value * maxIndex + 0.5f);
+        if (index < 0) {
+            index = 0;
+        } else if (index >= palette.length) {
+            index = palette.length - 1;
+        }
+        return palette[index];
+    }
+
+    // Colors count heights starting at heights[from] into pixels starting at pixels[to].
+    public void colorize(float[] heights, int from, int[] pixels, int to, int count) {
+        int[] palette = this.palette;
+        float maxIndex = this.maxIndex;
+        int last = palette.length - 1;
+        for (int i = 0; i < count; i++) {
+            int index = (int) (heights[from + i] * maxIndex + 0.5f);
+            pixels[to + i] = palette[index < 0 ? 0 : (index > last ? last : index)];
+        }
+    }
+
+    // Ramps with the same palette color every height the same, so they can share cached images.
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof ColorRamp && Arrays.equals(palette, ((ColorRamp) o).palette);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(palette);
+    }
+}
@@ -2,17 +2,16 @@ package utils;
 
 public class ConsoleUtils {
 
+    // Builds the whole bar first, System.out is synchronized and unbuffered.
     public static void printProgress(int percentage) {
         float progress = percentage / 2.5f;
-        System.out.print("\r" + "[" + Thread.currentThread().getName() + "] " + percentage + "%    [");
+        StringBuilder bar = new StringBuilder(64);
+        bar.append("\r[").append(Thread.currentThread().getName()).append("] ").append(percentage).append("%    [");
         for (int i = 0; i < 40; i++) {
-            if (progress > i) {
-                System.out.print("=");
-            } else {
-                System.out.print(" ");
-            }
+            bar.append(progress > i ? '=' : ' ');
         }
-        System.out.print("]");
+        bar.append(']');
+        System.out.print(bar);
     }
 
 }
@@ -15,6 +15,10 @@ public class MathUtils {
         return (a - value) / (a - b);
     }
 
+    public static float clamp(float value, float min, float max) {
+        return value < min ? min : (value > max ? max : value);
+    }
+
     public static float pow(float b, int e) {
         if (b < 0 || e < 0) {
             return Float.NaN;
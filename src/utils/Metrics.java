@@ -0,0 +1,197 @@
+package utils;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Always-on counters and stage timers. A stage is timed per call on the
+ * thread that runs it, together with the bytes that thread allocated in the
+ * meantime and the number of items it processed, so parallel stages add up
+ * to core time and their rate is items per second per core. Everything is
+ * kept in LongAdders and a call costs a few clock and counter reads, cheap
+ * enough to leave on. Every timed call is also committed as a JFR
+ * {@code terrain.Stage} event when a recording enables it, and the totals
+ * are exported with {@link #toJson()}.
+ */
+public final class Metrics {
+
+    private static final Map<String, Stage> STAGES = new ConcurrentSkipListMap<>();
+    private static final Map<String, LongAdder> COUNTERS = new ConcurrentSkipListMap<>();
+
+    // Null if the JVM cannot count allocated bytes per thread.
+    private static final com.sun.management.ThreadMXBean THREADS = allocationCounter();
+
+    private static final long START_NANOS = System.nanoTime();
+
+    private Metrics() {
+    }
+
+    public static Stage stage(String name) {
+        return STAGES.computeIfAbsent(name, Stage::new);
+    }
+
+    public static LongAdder counter(String name) {
+        return COUNTERS.computeIfAbsent(name, key -> new LongAdder());
+    }
+
+    public static void reset() {
+        STAGES.values().forEach(Stage::reset);
+        COUNTERS.values().forEach(LongAdder::reset);
+    }
+
+    // {"uptimeMillis":..,"counters":{name:value,..},"stages":{name:{"count":..,"totalNanos":..,..},..}}
+    public static String toJson() {
+        StringBuilder json = new StringBuilder(256);
+        json.append("{\"uptimeMillis\":").append((System.nanoTime() - START_NANOS) / 1_000_000);
+
+        json.append(",\"counters\":{");
+        String separator = "";
+        for (Map.Entry<String, LongAdder> counter : COUNTERS.entrySet()) {
+            json.append(separator).append('"').append(counter.getKey()).append("\":").append(counter.getValue().sum());
+            separator = ",";
+        }
+
+        json.append("},\"stages\":{");
+        separator = "";
+        for (Stage stage : STAGES.values()) {
+            json.append(separator).append('"').append(stage.name).append("\":");
+            stage.appendJson(json);
+            separator = ",";
+        }
+        return json.append("}}").toString();
+    }
+
+    private static long allocatedBytes() {
+        return THREADS == null ? 0 : THREADS.getCurrentThreadAllocatedBytes();
+    }
+
+    private static com.sun.management.ThreadMXBean allocationCounter() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) threads;
+            if (allocations.isThreadAllocatedMemorySupported() && allocations.isThreadAllocatedMemoryEnabled()) {
+                return allocations;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * The totals of all timed calls of one stage.
+     */
+    public static final class Stage {
+
+        private final String name;
+
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+        private final LongAdder allocatedBytes = new LongAdder();
+        private final LongAdder items = new LongAdder();
+
+        private Stage(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public Timer start() {
+            return new Timer(this);
+        }
+
+        public long getCount() {
+            return count.sum();
+        }
+
+        public long getTotalNanos() {
+            return totalNanos.sum();
+        }
+
+        public long getAllocatedBytes() {
+            return allocatedBytes.sum();
+        }
+
+        public long getItems() {
+            return items.sum();
+        }
+
+        // Items per second of the time spent in the stage, per core for stages that run in parallel.
+        public double getItemsPerSecond() {
+            long nanos = totalNanos.sum();
+            return nanos == 0 ? 0 : items.sum() * 1e9 / nanos;
+        }
+
+        private void record(long nanos, long allocated, long processed) {
+            count.increment();
+            totalNanos.add(nanos);
+            maxNanos.accumulate(nanos);
+            allocatedBytes.add(allocated);
+            items.add(processed);
+        }
+
+        private void reset() {
+            count.reset();
+            totalNanos.reset();
+            maxNanos.reset();
+            allocatedBytes.reset();
+            items.reset();
+        }
+
+        private void appendJson(StringBuilder json) {
+            long calls = count.sum();
+            long nanos = totalNanos.sum();
+            json.append("{\"count\":").append(calls)
+                    .append(",\"totalNanos\":").append(nanos)
+                    .append(",\"meanNanos\":").append(calls == 0 ? 0 : nanos / calls)
+                    .append(",\"maxNanos\":").append(maxNanos.get())
+                    .append(",\"allocatedBytes\":").append(allocatedBytes.sum())
+                    .append(",\"items\":").append(items.sum())
+                    .append(",\"itemsPerSecond\":").append(Math.round(getItemsPerSecond()))
+                    .append('}');
+        }
+    }
+
+    /**
+     * One running call of a stage. The allocated bytes are only counted if
+     * the timer is stopped on the thread that started it.
+     */
+    public static final class Timer {
+
+        private final Stage stage;
+        private final Thread thread = Thread.currentThread();
+        private final long startAllocated = allocatedBytes();
+        private final StageEvent event = new StageEvent();
+        private final long startNanos;
+
+        private Timer(Stage stage) {
+            this.stage = stage;
+            event.begin();
+            startNanos = System.nanoTime();
+        }
+
+        public void stop() {
+            stop(0);
+        }
+
+        // Stops the call that processed the given number of items.
+        public void stop(long processed) {
+            long nanos = System.nanoTime() - startNanos;
+            long allocated = Thread.currentThread() == thread ? allocatedBytes() - startAllocated : 0;
+            stage.record(nanos, allocated, processed);
+
+            event.end();
+            if (event.shouldCommit()) {
+                event.stage = stage.name;
+                event.allocated = allocated;
+                event.items = processed;
+                event.commit();
+            }
+        }
+    }
+}
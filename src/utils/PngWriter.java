@@ -0,0 +1,283 @@
+package utils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Writes PNG images straight from primitive buffers through a FileChannel,
+ * without an intermediate BufferedImage.
+ * <p>
+ * The scanlines are split into chunks that are Paeth filtered and deflated
+ * in parallel. Every chunk but the last ends with a SYNC_FLUSH on a byte
+ * boundary, so the compressed chunks concatenate into one zlib stream the
+ * way pigz does it, each one written as its own IDAT chunk. The Adler-32 of
+ * the whole stream is combined from the checksums of the chunks.
+ */
+public final class PngWriter {
+
+    private static final byte[] SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+
+    private static final int COLOR_GRAY = 0;
+    private static final int COLOR_RGB = 2;
+
+    private static final int FILTER_PAETH = 4;
+
+    // Uncompressed bytes per chunk, large enough that restarting deflate for each chunk costs little.
+    private static final int CHUNK_BYTES = 256 * 1024;
+    // Paeth filtered noise compresses well at the fastest level already, smaller than ImageIO and about twice as fast.
+    private static final int LEVEL = Deflater.BEST_SPEED;
+
+    // Fills row y of the image with its big-endian samples.
+    private interface Scanlines {
+        void fill(int y, byte[] row);
+    }
+
+    private PngWriter() {
+    }
+
+    // Heights in [0, 1] as 16-bit grayscale, row y starts at heights[offset + y * stride]. Returns the file size.
+    public static long writeGray16(float[] heights, int offset, int stride, int width, int height, Path path, Executor executor) throws IOException {
+        return write(path, width, height, 16, COLOR_GRAY, 2, (y, row) -> {
+            int start = offset + y * stride;
+            for (int x = 0; x < width; x++) {
+                int value = Math.round(MathUtils.clamp(heights[start + x], 0, 1) * 65535);
+                row[2 * x] = (byte) (value >>> 8);
+                row[2 * x + 1] = (byte) value;
+            }
+        }, executor);
+    }
+
+    // Packed 0xRRGGBB pixels in row-major order as 8-bit RGB, like the buffer of a TYPE_INT_RGB image.
+    public static long writeRgb(int[] pixels, int width, int height, Path path, Executor executor) throws IOException {
+        return write(path, width, height, 8, COLOR_RGB, 3, (y, row) -> {
+            int start = y * width;
+            for (int x = 0; x < width; x++) {
+                int pixel = pixels[start + x];
+                row[3 * x] = (byte) (pixel >>> 16);
+                row[3 * x + 1] = (byte) (pixel >>> 8);
+                row[3 * x + 2] = (byte) pixel;
+            }
+        }, executor);
+    }
+
+    // With an executor the chunks are compressed in parallel, the calling thread takes chunks as well, so the write
+    // finishes even on an executor that is busy with the caller. A null executor compresses on the calling thread.
+    private static long write(Path path, int width, int height, int bitDepth, int colorType, int bytesPerPixel, Scanlines scanlines,
+                              Executor executor) throws IOException {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Invalid dimensions " + width + "x" + height);
+        }
+
+        int rowBytes = width * bytesPerPixel;
+        int rowsPerChunk = Math.max(1, CHUNK_BYTES / (rowBytes + 1));
+        int chunkCount = (height + rowsPerChunk - 1) / rowsPerChunk;
+
+        List<CompletableFuture<Chunk>> chunks = new ArrayList<>(chunkCount);
+        for (int i = 0; i < chunkCount; i++) {
+            chunks.add(new CompletableFuture<>());
+        }
+
+        AtomicInteger nextChunk = new AtomicInteger();
+        Runnable compressor = () -> {
+            int i;
+            while ((i = nextChunk.getAndIncrement()) < chunkCount) {
+                int fromY = i * rowsPerChunk;
+                int toY = Math.min(fromY + rowsPerChunk, height);
+                try {
+                    chunks.get(i).complete(compress(scanlines, rowBytes, bytesPerPixel, fromY, toY, i == 0, i == chunkCount - 1));
+                } catch (RuntimeException | Error e) {
+                    chunks.get(i).completeExceptionally(e);
+                }
+            }
+        };
+
+        if (executor != null) {
+            int helpers = Math.min(chunkCount - 1, Runtime.getRuntime().availableProcessors() - 1);
+            for (int i = 0; i < helpers; i++) {
+                executor.execute(compressor);
+            }
+        }
+        compressor.run();
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer header = ByteBuffer.allocate(SIGNATURE.length + 25);
+            header.put(SIGNATURE);
+            header.put(chunk("IHDR", ByteBuffer.allocate(13).putInt(width).putInt(height)
+                    .put((byte) bitDepth).put((byte) colorType).put((byte) 0).put((byte) 0).put((byte) 0).array()));
+            writeFully(channel, header.flip());
+
+            int adler = 1;
+            for (CompletableFuture<Chunk> future : chunks) {
+                Chunk chunk;
+                try {
+                    chunk = future.join();
+                } catch (CompletionException e) {
+                    throw new IllegalStateException("PNG compression failed", e.getCause());
+                }
+                writeFully(channel, ByteBuffer.wrap(chunk.idat));
+                adler = combineAdler(adler, chunk.adler, chunk.length);
+            }
+
+            // The zlib trailer in an IDAT of its own, then the end of the image.
+            writeFully(channel, ByteBuffer.wrap(chunk("IDAT", ByteBuffer.allocate(4).putInt(adler).array())));
+            writeFully(channel, ByteBuffer.wrap(chunk("IEND", new byte[0])));
+
+            return channel.size();
+        }
+    }
+
+    // An IDAT chunk holding the deflated rows [fromY, toY), the first one starts the zlib stream, the last one ends it.
+    private static Chunk compress(Scanlines scanlines, int rowBytes, int bytesPerPixel, int fromY, int toY, boolean first, boolean last) {
+        byte[] previous = new byte[rowBytes];
+        byte[] current = new byte[rowBytes];
+        if (fromY > 0) {
+            scanlines.fill(fromY - 1, previous);
+        }
+
+        byte[] filtered = new byte[(toY - fromY) * (rowBytes + 1)];
+        int position = 0;
+        for (int y = fromY; y < toY; y++) {
+            scanlines.fill(y, current);
+            filtered[position++] = FILTER_PAETH;
+            paeth(current, previous, bytesPerPixel, filtered, position);
+            position += rowBytes;
+
+            byte[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+
+        Adler32 adler = new Adler32();
+        adler.update(filtered);
+
+        // Length and type first, then the zlib header before the first deflated bytes.
+        byte[] idat = new byte[filtered.length / 4 + 64];
+        int length = 8;
+        if (first) {
+            idat[length++] = 0x78;
+            idat[length++] = (byte) 0x9C;
+        }
+
+        Deflater deflater = new Deflater(LEVEL, true);
+        try {
+            deflater.setInput(filtered);
+            if (last) {
+                deflater.finish();
+            }
+            while (true) {
+                if (length == idat.length) {
+                    idat = Arrays.copyOf(idat, idat.length * 2);
+                }
+                length += deflater.deflate(idat, length, idat.length - length, last ? Deflater.NO_FLUSH : Deflater.SYNC_FLUSH);
+                // A sync flush is complete once it leaves space in the buffer.
+                if (last ? deflater.finished() : length < idat.length) {
+                    break;
+                }
+            }
+        } finally {
+            deflater.end();
+        }
+
+        idat = Arrays.copyOf(idat, length + 4);
+        ByteBuffer framing = ByteBuffer.wrap(idat);
+        framing.putInt(0, length - 8);
+        framing.put(4, (byte) 'I').put(5, (byte) 'D').put(6, (byte) 'A').put(7, (byte) 'T');
+        CRC32 crc = new CRC32();
+        crc.update(idat, 4, length - 4);
+        framing.putInt(length, (int) crc.getValue());
+
+        return new Chunk(idat, (int) adler.getValue(), filtered.length);
+    }
+
+    private static void paeth(byte[] current, byte[] previous, int bytesPerPixel, byte[] out, int offset) {
+        for (int i = 0; i < current.length; i++) {
+            int left = i >= bytesPerPixel ? current[i - bytesPerPixel] & 0xFF : 0;
+            int up = previous[i] & 0xFF;
+            int upLeft = i >= bytesPerPixel ? previous[i - bytesPerPixel] & 0xFF : 0;
+
+            int estimate = left + up - upLeft;
+            int distanceLeft = Math.abs(estimate - left);
+            int distanceUp = Math.abs(estimate - up);
+            int distanceUpLeft = Math.abs(estimate - upLeft);
+
+            int predictor;
+            if (distanceLeft <= distanceUp && distanceLeft <= distanceUpLeft) {
+                predictor = left;
+            } else if (distanceUp <= distanceUpLeft) {
+                predictor = up;
+            } else {
+                predictor = upLeft;
+            }
+            out[offset + i] = (byte) (current[i] - predictor);
+        }
+    }
+
+    // The Adler-32 of two concatenated byte sequences from the checksums of both and the length of the second, as
+    // adler32_combine of zlib.
+    static int combineAdler(int first, int second, long secondLength) {
+        final int base = 65521;
+        long remainder = secondLength % base;
+        long sum1 = first & 0xFFFF;
+        long sum2 = (remainder * sum1) % base;
+        sum1 += (second & 0xFFFF) + base - 1;
+        sum2 += ((first >>> 16) & 0xFFFF) + ((second >>> 16) & 0xFFFF) + base - remainder;
+        if (sum1 >= base) {
+            sum1 -= base;
+        }
+        if (sum1 >= base) {
+            sum1 -= base;
+        }
+        if (sum2 >= (base << 1)) {
+            sum2 -= (base << 1);
+        }
+        if (sum2 >= base) {
+            sum2 -= base;
+        }
+        return (int) (sum1 | (sum2 << 16));
+    }
+
+    // A complete chunk of the given type: length, type, data and the CRC of type and data.
+    private static byte[] chunk(String type, byte[] data) {
+        ByteBuffer chunk = ByteBuffer.allocate(12 + data.length);
+        chunk.putInt(data.length);
+        chunk.put(type.getBytes(StandardCharsets.US_ASCII));
+        chunk.put(data);
+        CRC32 crc = new CRC32();
+        crc.update(chunk.array(), 4, 4 + data.length);
+        chunk.putInt((int) crc.getValue());
+        return chunk.array();
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static final class Chunk {
+
+        final byte[] idat;
+        final int adler;
+        final int length;
+
+        Chunk(byte[] idat, int adler, int length) {
+            this.idat = idat;
+            this.adler = adler;
+            this.length = length;
+        }
+    }
+}
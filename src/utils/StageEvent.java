@@ -0,0 +1,27 @@
+package utils;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event of one timed call of a {@link Metrics.Stage}.
+ */
+@Name("terrain.Stage")
+@Label("Terrain Stage")
+@Category("Terrain")
+@Description("One timed call of a generator stage")
+final class StageEvent extends jdk.jfr.Event {
+
+    @Label("Stage")
+    String stage;
+
+    @Label("Allocated")
+    @DataAmount
+    long allocated;
+
+    @Label("Items")
+    long items;
+}